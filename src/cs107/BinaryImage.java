@@ -0,0 +1,205 @@
+package cs107;
+
+import java.util.Arrays;
+
+/**
+ * Bit-packed binary image.
+ * <p>
+ * Pixels are stored row by row in a single contiguous <code>long[]</code>,
+ * 64 pixels per word. Bit <code>col % 64</code> of word
+ * <code>row * wordsPerRow + col / 64</code> holds the pixel at
+ * <code>(row, col)</code>. Black pixels are <code>1</code> (<code>true</code>)
+ * and white pixels are <code>0</code> (<code>false</code>), following the same
+ * convention as the <code>boolean[][]</code> images used in
+ * {@link Fingerprint}. The unused bits at the end of each row are always
+ * <code>0</code>.
+ */
+public final class BinaryImage {
+
+  /**
+   * The number of pixels stored in each word.
+   */
+  static final int WORD_SIZE = 64;
+
+  private final int height;
+  private final int width;
+  private final int wordsPerRow;
+  private final long[] words;
+
+  /**
+   * Creates a new white image.
+   *
+   * @param height the number of rows of the image.
+   * @param width  the number of columns of the image.
+   */
+  public BinaryImage(final int height, final int width) {
+    assert (height >= 0 && width >= 0);
+    this.height = height;
+    this.width = width;
+    this.wordsPerRow = (width + WORD_SIZE - 1) / WORD_SIZE;
+    this.words = new long[height * wordsPerRow];
+  }
+
+  /**
+   * Converts a <code>boolean[][]</code> image to its packed form.
+   *
+   * @param image array containing each pixel's boolean value, assumed
+   *              rectangular.
+   * @return the packed image.
+   */
+  public static BinaryImage fromArray(final boolean[][] image) {
+    assert (image != null);
+    final int height = image.length;
+    final int width = height == 0 ? 0 : image[0].length;
+    final BinaryImage result = new BinaryImage(height, width);
+    for (int row = 0; row < height; ++row) {
+      final int offset = row * result.wordsPerRow;
+      for (int col = 0; col < width; ++col) {
+        if (image[row][col]) {
+          result.words[offset + (col >>> 6)] |= 1L << col;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Converts this image back to a <code>boolean[][]</code> image.
+   *
+   * @return array containing each pixel's boolean value.
+   */
+  public boolean[][] toArray() {
+    final boolean[][] result = new boolean[height][width];
+    for (int row = 0; row < height; ++row) {
+      final int offset = row * wordsPerRow;
+      for (int col = 0; col < width; ++col) {
+        result[row][col] = (words[offset + (col >>> 6)] & (1L << col)) != 0;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return the number of rows of the image.
+   */
+  public int height() {
+    return height;
+  }
+
+  /**
+   * @return the number of columns of the image.
+   */
+  public int width() {
+    return width;
+  }
+
+  /**
+   * @return the number of words used to store one row.
+   */
+  int wordsPerRow() {
+    return wordsPerRow;
+  }
+
+  /**
+   * Gives direct access to the packed pixels, see the class description for
+   * the layout.
+   *
+   * @return the backing array of this image.
+   */
+  long[] words() {
+    return words;
+  }
+
+  /**
+   * Returns the value of a pixel.
+   *
+   * @param row the row of the pixel, between <code>0</code>(included) and
+   *            {@link #height()}(excluded).
+   * @param col the column of the pixel, between <code>0</code>(included) and
+   *            {@link #width()}(excluded).
+   * @return <code>true</code> if the pixel is black.
+   */
+  public boolean get(final int row, final int col) {
+    return (words[row * wordsPerRow + (col >>> 6)] & (1L << col)) != 0;
+  }
+
+  /**
+   * Returns the value of a pixel, pixels out of bounds being white.
+   *
+   * @param row the row of the pixel.
+   * @param col the column of the pixel.
+   * @return <code>true</code> if the pixel is in bounds and black.
+   */
+  public boolean getOrWhite(final int row, final int col) {
+    if (row < 0 || row >= height || col < 0 || col >= width) {
+      return false;
+    }
+    return get(row, col);
+  }
+
+  /**
+   * Sets the value of a pixel.
+   *
+   * @param row   the row of the pixel.
+   * @param col   the column of the pixel.
+   * @param value <code>true</code> for black, <code>false</code> for white.
+   */
+  public void set(final int row, final int col, final boolean value) {
+    final int index = row * wordsPerRow + (col >>> 6);
+    if (value) {
+      words[index] |= 1L << col;
+    } else {
+      words[index] &= ~(1L << col);
+    }
+  }
+
+  /**
+   * Counts the black pixels of the image.
+   *
+   * @return the number of black pixels.
+   */
+  public int cardinality() {
+    int count = 0;
+    for (final long word : words) {
+      count += Long.bitCount(word);
+    }
+    return count;
+  }
+
+  /**
+   * @return a copy of this image.
+   */
+  public BinaryImage copy() {
+    final BinaryImage result = new BinaryImage(height, width);
+    System.arraycopy(words, 0, result.words, 0, words.length);
+    return result;
+  }
+
+  /**
+   * Overwrites the pixels of this image with those of another image of the
+   * same size.
+   *
+   * @param other the image to copy from.
+   */
+  public void copyFrom(final BinaryImage other) {
+    assert (other.height == height && other.width == width);
+    System.arraycopy(other.words, 0, words, 0, words.length);
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof BinaryImage)) {
+      return false;
+    }
+    final BinaryImage other = (BinaryImage) o;
+    return height == other.height && width == other.width && Arrays.equals(words, other.words);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * (31 * height + width) + Arrays.hashCode(words);
+  }
+}
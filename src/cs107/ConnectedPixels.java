@@ -0,0 +1,152 @@
+package cs107;
+
+import java.util.Arrays;
+
+/**
+ * The pixels connected to a minutia within a given distance, as computed by
+ * {@link Fingerprint#connectedPixels(PaddedBinaryImage, int, int, int, ConnectedPixels)}.
+ * <p>
+ * Only the <code>(2 * distance + 1)</code> square window centred on the
+ * minutia is represented: the pixels found are kept as a list of coordinates,
+ * and a bitmap of the window marks which pixels have already been found. An
+ * instance can be reused for several minutiae to avoid allocating.
+ */
+public final class ConnectedPixels {
+
+  private int row;
+  private int col;
+  private int distance;
+  private int side;
+  private long[] visited = new long[0];
+  private int[] rows = new int[0];
+  private int[] cols = new int[0];
+  private int size;
+
+  /**
+   * Creates an empty set of connected pixels, sized for the given distance.
+   *
+   * @param distance the maximum distance expected, the buffers grow if needed.
+   */
+  public ConnectedPixels(final int distance) {
+    reset(0, 0, distance);
+  }
+
+  /**
+   * Empties the set and centres its window on a new minutia.
+   *
+   * @param row      the row of the minutia.
+   * @param col      the column of the minutia.
+   * @param distance the maximum distance at which a pixel is considered.
+   */
+  void reset(final int row, final int col, final int distance) {
+    assert (distance >= 0);
+    this.row = row;
+    this.col = col;
+    this.distance = distance;
+    this.side = 2 * distance + 1;
+    final int capacity = side * side;
+    if (rows.length < capacity) {
+      rows = new int[capacity];
+      cols = new int[capacity];
+      visited = new long[(capacity + BinaryImage.WORD_SIZE - 1) / BinaryImage.WORD_SIZE];
+    } else {
+      Arrays.fill(visited, 0);
+    }
+    size = 0;
+  }
+
+  /**
+   * Adds a pixel if it is within the window and not already present.
+   *
+   * @param r the row of the pixel.
+   * @param c the column of the pixel.
+   * @return <code>true</code> if the pixel was added.
+   */
+  boolean add(final int r, final int c) {
+    final int dr = r - row + distance;
+    final int dc = c - col + distance;
+    if (dr < 0 || dr >= side || dc < 0 || dc >= side) {
+      return false;
+    }
+    final int index = dr * side + dc;
+    final long bit = 1L << index;
+    if ((visited[index >>> 6] & bit) != 0) {
+      return false;
+    }
+    visited[index >>> 6] |= bit;
+    rows[size] = r;
+    cols[size] = c;
+    ++size;
+    return true;
+  }
+
+  /**
+   * @param r the row of the pixel.
+   * @param c the column of the pixel.
+   * @return <code>true</code> if the pixel at <code>(r, c)</code> is connected
+   *         to the minutia.
+   */
+  public boolean contains(final int r, final int c) {
+    final int dr = r - row + distance;
+    final int dc = c - col + distance;
+    if (dr < 0 || dr >= side || dc < 0 || dc >= side) {
+      return false;
+    }
+    final int index = dr * side + dc;
+    return (visited[index >>> 6] & (1L << index)) != 0;
+  }
+
+  /**
+   * @return the row of the minutia.
+   */
+  public int row() {
+    return row;
+  }
+
+  /**
+   * @return the column of the minutia.
+   */
+  public int col() {
+    return col;
+  }
+
+  /**
+   * @return the number of connected pixels, the minutia included.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @param k the index of the pixel, in the order they were found.
+   * @return the row of the <code>k</code>-th connected pixel.
+   */
+  public int row(final int k) {
+    return rows[k];
+  }
+
+  /**
+   * @param k the index of the pixel, in the order they were found.
+   * @return the column of the <code>k</code>-th connected pixel.
+   */
+  public int col(final int k) {
+    return cols[k];
+  }
+
+  /**
+   * Converts the set to the full size representation returned by
+   * {@link Fingerprint#connectedPixels(boolean[][], int, int, int)}.
+   *
+   * @param height the number of rows of the image.
+   * @param width  the number of columns of the image.
+   * @return An array where <code>true</code> means that the pixel is connected
+   *         to the minutia.
+   */
+  public boolean[][] toArray(final int height, final int width) {
+    final boolean[][] result = new boolean[height][width];
+    for (int k = 0; k < size; ++k) {
+      result[rows[k]][cols[k]] = true;
+    }
+    return result;
+  }
+}
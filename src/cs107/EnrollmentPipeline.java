@@ -0,0 +1,369 @@
+package cs107;
+
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Computes the templates of a stream of image files, decoding, thinning and
+ * extracting several images at the same time.
+ * <p>
+ * The images are decoded by {@link #decoders()} threads, which mostly wait
+ * for the disk, and thinned and extracted by {@link #extractors()} threads,
+ * which should be as many as there are cores. The stages are connected by
+ * bounded queues of {@link #queueCapacity()} entries: a stage blocks when the
+ * next one falls behind, and the paths are only read from the iterator when a
+ * decoder is free, so that at most a few images per thread are in memory
+ * whatever the number of images.
+ * <p>
+ * The templates are passed to the consumer on the thread calling
+ * {@link #run(Iterator, BiConsumer)}, in the order they are completed, which
+ * is not the order of the paths. The consumer therefore needs no
+ * synchronization, and can for instance enroll the templates into a
+ * {@link Gallery}. The time spent in each stage is counted in a
+ * {@link Stage}, to find which one limits the throughput. A pipeline runs
+ * one stream at a time.
+ */
+public final class EnrollmentPipeline {
+
+  /**
+   * The number of entries of each queue per thread consuming it, used by
+   * {@link #EnrollmentPipeline()}.
+   */
+  public static final int QUEUE_ENTRIES_PER_THREAD = 2;
+
+  private final int decoders;
+  private final int extractors;
+  private final int queueCapacity;
+
+  private final Stage decoding = new Stage("decoding");
+  private final Stage thinning = new Stage("thinning");
+  private final Stage extraction = new Stage("extraction");
+  private final AtomicLong emitted = new AtomicLong();
+  private long elapsed;
+
+  /**
+   * Creates a pipeline with one extractor per core, twice as many decoders and
+   * {@link #QUEUE_ENTRIES_PER_THREAD} entries per extractor in each queue.
+   */
+  public EnrollmentPipeline() {
+    this(2 * Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors(),
+        QUEUE_ENTRIES_PER_THREAD * Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Creates a pipeline.
+   *
+   * @param decoders      the number of threads decoding the images.
+   * @param extractors    the number of threads thinning the images and
+   *                      extracting their templates.
+   * @param queueCapacity the number of entries of each queue.
+   */
+  public EnrollmentPipeline(final int decoders, final int extractors, final int queueCapacity) {
+    assert (decoders > 0 && extractors > 0 && queueCapacity > 0);
+    this.decoders = decoders;
+    this.extractors = extractors;
+    this.queueCapacity = queueCapacity;
+  }
+
+  /**
+   * Computes the templates of image files.
+   * <p>
+   * If the consumer throws, the pipeline is stopped and the exception thrown
+   * again. If an exception is thrown while decoding or extracting an image,
+   * the pipeline is stopped and the exception thrown, with the path of the
+   * image in its message. If the iterator throws, the pipeline is stopped and
+   * the exception thrown again.
+   *
+   * @param images   the paths of the images, read by the decoding threads.
+   * @param consumer called with the path of each image and its template, or
+   *                 <code>null</code> if the image cannot be decoded.
+   * @throws InterruptedException if the calling thread is interrupted, the
+   *                              pipeline being then stopped.
+   */
+  public void run(final Iterator<Path> images, final BiConsumer<Path, FingerprintTemplate> consumer)
+      throws InterruptedException {
+    assert (images != null && consumer != null);
+    final long start = System.nanoTime();
+    final BlockingQueue<Item> decoded = new ArrayBlockingQueue<>(queueCapacity);
+    final BlockingQueue<Item> extracted = new ArrayBlockingQueue<>(queueCapacity);
+    final AtomicInteger decodersLeft = new AtomicInteger(decoders);
+    final AtomicInteger extractorsLeft = new AtomicInteger(extractors);
+
+    final ExecutorService pool = Executors.newFixedThreadPool(decoders + extractors, runnable -> {
+      final Thread thread = new Thread(runnable, "enrollment");
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      for (int t = 0; t < decoders; ++t) {
+        pool.execute(() -> decode(images, decoded, extracted, decodersLeft));
+      }
+      for (int t = 0; t < extractors; ++t) {
+        pool.execute(() -> extract(decoded, extracted, extractorsLeft));
+      }
+
+      for (Item item = extracted.take(); item != Item.END; item = extracted.take()) {
+        if (item.failure != null && item.path == null) {
+          //the iterator failed
+          if (item.failure instanceof Error) {
+            throw (Error) item.failure;
+          }
+          throw (RuntimeException) item.failure;
+        }
+        if (item.failure != null) {
+          throw new IllegalStateException("Cannot enroll " + item.path, item.failure);
+        }
+        consumer.accept(item.path, item.template);
+        emitted.incrementAndGet();
+      }
+    } finally {
+      //interrupts the threads blocked on a queue if the run was stopped early
+      pool.shutdownNow();
+      elapsed += System.nanoTime() - start;
+    }
+  }
+
+  /**
+   * Decodes images until there are no more paths, the last decoder to finish
+   * then telling every extractor to stop. An exception thrown by the iterator
+   * is passed to the consumer thread as an item without path.
+   */
+  private void decode(final Iterator<Path> images, final BlockingQueue<Item> decoded,
+      final BlockingQueue<Item> extracted, final AtomicInteger decodersLeft) {
+    try {
+      try {
+        while (true) {
+          final Path path;
+          synchronized (images) {
+            if (!images.hasNext()) {
+              break;
+            }
+            path = images.next();
+          }
+          final Item item = new Item(path);
+          final long start = System.nanoTime();
+          try {
+            item.image = Helper.readBinaryImage(path.toString());
+          } catch (final RuntimeException | Error e) {
+            item.failure = e;
+          }
+          decoding.add(System.nanoTime() - start, item.image == null);
+          //a failed item goes straight to the consumer
+          (item.image == null ? extracted : decoded).put(item);
+        }
+      } catch (final RuntimeException | Error e) {
+        final Item item = new Item(null);
+        item.failure = e;
+        extracted.put(item);
+      } catch (final InterruptedException e) {
+        //the queues below then throw at once instead of blocking
+        Thread.currentThread().interrupt();
+      } finally {
+        //the extractors are stopped however the decoders end, so that the run never waits forever
+        if (decodersLeft.decrementAndGet() == 0) {
+          for (int t = 0; t < extractors; ++t) {
+            decoded.put(Item.END);
+          }
+        }
+      }
+    } catch (final InterruptedException e) {
+      //the run was stopped
+    }
+  }
+
+  /**
+   * Thins the decoded images and extracts their templates until told to stop,
+   * the last extractor to finish then telling the consumer to stop.
+   */
+  private void extract(final BlockingQueue<Item> decoded, final BlockingQueue<Item> extracted,
+      final AtomicInteger extractorsLeft) {
+    try {
+      for (Item item = decoded.take(); item != Item.END; item = decoded.take()) {
+        Stage stage = thinning;
+        long start = System.nanoTime();
+        try {
+          final BinaryImage skeleton = Fingerprint.thinBitSliced(item.image);
+          //the binary image is not needed anymore
+          item.image = null;
+          thinning.add(System.nanoTime() - start, false);
+
+          stage = extraction;
+          start = System.nanoTime();
+          item.template = FingerprintTemplate.extract(skeleton);
+          extraction.add(System.nanoTime() - start, false);
+        } catch (final RuntimeException | Error e) {
+          item.failure = e;
+          //the image counts as a failure of the stage that threw
+          stage.add(System.nanoTime() - start, true);
+        }
+        extracted.put(item);
+      }
+      if (extractorsLeft.decrementAndGet() == 0) {
+        extracted.put(Item.END);
+      }
+    } catch (final InterruptedException e) {
+      //the run was stopped
+    }
+  }
+
+  /**
+   * @return the number of threads decoding the images.
+   */
+  public int decoders() {
+    return decoders;
+  }
+
+  /**
+   * @return the number of threads thinning the images and extracting their
+   *         templates.
+   */
+  public int extractors() {
+    return extractors;
+  }
+
+  /**
+   * @return the number of entries of each queue.
+   */
+  public int queueCapacity() {
+    return queueCapacity;
+  }
+
+  /**
+   * @return the decoding of the images.
+   */
+  public Stage decoding() {
+    return decoding;
+  }
+
+  /**
+   * @return the thinning of the images.
+   */
+  public Stage thinning() {
+    return thinning;
+  }
+
+  /**
+   * @return the extraction of the templates.
+   */
+  public Stage extraction() {
+    return extraction;
+  }
+
+  /**
+   * @return the number of images passed to the consumer, over every run.
+   */
+  public long emitted() {
+    return emitted.get();
+  }
+
+  /**
+   * @return the number of images passed to the consumer per second of every
+   *         run.
+   */
+  public double throughput() {
+    return elapsed == 0 ? 0 : emitted.get() * 1e9 / elapsed;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d images, %.1f/s (%s; %s; %s)", emitted(), throughput(), decoding, thinning,
+        extraction);
+  }
+
+  /**
+   * An image going through the pipeline.
+   */
+  private static final class Item {
+
+    /**
+     * Marks the end of a queue.
+     */
+    static final Item END = new Item(null);
+
+    final Path path;
+    BinaryImage image;
+    FingerprintTemplate template;
+    Throwable failure;
+
+    Item(final Path path) {
+      this.path = path;
+    }
+  }
+
+  /**
+   * The work done by one stage of the pipeline, summed over its threads and
+   * over every run.
+   */
+  public static final class Stage {
+
+    private final String name;
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong time = new AtomicLong();
+
+    Stage(final String name) {
+      this.name = name;
+    }
+
+    /**
+     * Counts one image processed by the stage.
+     */
+    void add(final long nanos, final boolean failed) {
+      count.incrementAndGet();
+      time.addAndGet(nanos);
+      if (failed) {
+        failures.incrementAndGet();
+      }
+    }
+
+    /**
+     * @return the name of the stage.
+     */
+    public String name() {
+      return name;
+    }
+
+    /**
+     * @return the number of images processed, failures included.
+     */
+    public long count() {
+      return count.get();
+    }
+
+    /**
+     * @return the number of images that could not be processed.
+     */
+    public long failures() {
+      return failures.get();
+    }
+
+    /**
+     * @return the time spent processing the images in nanoseconds, summed over
+     *         the threads of the stage.
+     */
+    public long time() {
+      return time.get();
+    }
+
+    /**
+     * @return the number of images one thread of the stage processes per
+     *         second.
+     */
+    public double throughput() {
+      final long nanos = time.get();
+      return nanos == 0 ? 0 : count.get() * 1e9 / nanos;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s: %d images, %d failed, %.1f/s per thread", name, count(), failures(), throughput());
+    }
+  }
+}
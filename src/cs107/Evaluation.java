@@ -0,0 +1,418 @@
+package cs107;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Scores of every pair of a set of fingerprints, and the error rates of the
+ * matcher at {@link Fingerprint#FOUND_THRESHOLD}.
+ * <p>
+ * The templates are extracted once, then every ordered pair of different
+ * fingerprints is scored with
+ * {@link MatchingEngine#score(FingerprintTemplate, FingerprintTemplate, MatchStrategy, int)},
+ * the rows of the score matrix being computed in parallel. Two fingerprints
+ * are of the same finger if their ids have the same prefix before
+ * <code>'_'</code>, as the images of <code>resources/fingerprints</code>.
+ * <p>
+ * The matchers of this package are not symmetric: the alignments tried depend
+ * on which fingerprint comes first, and about one score in five changes when
+ * the fingerprints are swapped. A symmetric evaluation only scores the pairs
+ * <code>(i, j)</code> with <code>i &lt; j</code> and reuses their score for
+ * <code>(j, i)</code>, which halves the time of a run but only approximates
+ * the error rates.
+ */
+public final class Evaluation {
+
+  private final List<String> ids;
+  private final List<FingerprintTemplate> templates;
+  private final MatchStrategy strategy;
+  private final boolean symmetric;
+  private final int[] scores;
+  private final long extractionTime;
+  private final long matchingTime;
+
+  private Evaluation(final List<String> ids, final List<FingerprintTemplate> templates,
+      final MatchStrategy strategy, final boolean symmetric, final int[] scores, final long extractionTime,
+      final long matchingTime) {
+    this.ids = ids;
+    this.templates = templates;
+    this.strategy = strategy;
+    this.symmetric = symmetric;
+    this.scores = scores;
+    this.extractionTime = extractionTime;
+    this.matchingTime = matchingTime;
+  }
+
+  /**
+   * Evaluates a matcher on the images of a directory, extracting their
+   * templates with an {@link EnrollmentPipeline}.
+   *
+   * @param directory the directory of the images, each named
+   *                  <code>finger_impression</code> with an extension read by
+   *                  {@link Helper#readBinaryImage(String)}.
+   * @param strategy  the way of searching the alignments.
+   * @param symmetric <code>true</code> to score each unordered pair once.
+   * @param pool      the pool scoring the pairs.
+   * @return the evaluation, the fingerprints being sorted by id.
+   * @throws IOException          if the directory cannot be listed, if two
+   *                              images have the same id, for instance
+   *                              <code>1_1.png</code> and <code>1_1.pbm</code>,
+   *                              or if an image cannot be decoded.
+   * @throws InterruptedException if the calling thread is interrupted while
+   *                              extracting the templates.
+   */
+  public static Evaluation run(final Path directory, final MatchStrategy strategy, final boolean symmetric,
+      final ForkJoinPool pool) throws IOException, InterruptedException {
+    final List<Path> images = new ArrayList<>();
+    final Map<String, Path> paths = new HashMap<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.{png,pbm,pgm,pnm}")) {
+      for (final Path file : files) {
+        //a fingerprint read twice would silently replace the other in the error rates
+        final Path other = paths.put(id(file), file);
+        if (other != null) {
+          throw new IOException("Duplicate fingerprint " + id(file) + ": " + other + " and " + file);
+        }
+        images.add(file);
+      }
+    }
+
+    final long start = System.nanoTime();
+    final Map<String, FingerprintTemplate> templates = new HashMap<>();
+    final List<Path> failed = new ArrayList<>();
+    new EnrollmentPipeline().run(images.iterator(), (image, template) -> {
+      if (template == null) {
+        failed.add(image);
+      } else {
+        templates.put(id(image), template);
+      }
+    });
+    if (!failed.isEmpty()) {
+      throw new IOException("Cannot decode " + failed);
+    }
+    final long extractionTime = System.nanoTime() - start;
+
+    final List<String> ids = new ArrayList<>(templates.keySet());
+    Collections.sort(ids, Evaluation::compareIds);
+    final List<FingerprintTemplate> sorted = new ArrayList<>(ids.size());
+    for (final String id : ids) {
+      sorted.add(templates.get(id));
+    }
+    return run(ids, sorted, strategy, symmetric, pool, extractionTime);
+  }
+
+  /**
+   * Evaluates a matcher on templates already extracted.
+   *
+   * @param ids       the ids of the fingerprints.
+   * @param templates the templates of the fingerprints, in the same order.
+   * @param strategy  the way of searching the alignments.
+   * @param symmetric <code>true</code> to score each unordered pair once.
+   * @param pool      the pool scoring the pairs.
+   * @return the evaluation.
+   */
+  public static Evaluation run(final List<String> ids, final List<FingerprintTemplate> templates,
+      final MatchStrategy strategy, final boolean symmetric, final ForkJoinPool pool) {
+    return run(ids, templates, strategy, symmetric, pool, 0);
+  }
+
+  /**
+   * Scores every pair of templates.
+   */
+  private static Evaluation run(final List<String> ids, final List<FingerprintTemplate> templates,
+      final MatchStrategy strategy, final boolean symmetric, final ForkJoinPool pool, final long extractionTime) {
+    assert (ids.size() == templates.size());
+    final int size = templates.size();
+    final int[] scores = new int[size * size];
+    final long start = System.nanoTime();
+    pool.invoke(new Rows(templates, strategy, symmetric, scores, 0, size));
+    if (symmetric) {
+      for (int i = 0; i < size; ++i) {
+        for (int j = 0; j < i; ++j) {
+          scores[i * size + j] = scores[j * size + i];
+        }
+      }
+    }
+    return new Evaluation(new ArrayList<>(ids), new ArrayList<>(templates), strategy, symmetric, scores,
+        extractionTime, System.nanoTime() - start);
+  }
+
+  /**
+   * @param image the path of an image.
+   * @return the name of the image without its extension.
+   */
+  private static String id(final Path image) {
+    final String name = image.getFileName().toString();
+    final int dot = name.lastIndexOf('.');
+    return dot < 0 ? name : name.substring(0, dot);
+  }
+
+  /**
+   * Orders ids by finger then by impression, numerically when they are
+   * numbers, so that <code>2_1</code> comes before <code>10_1</code>.
+   */
+  private static int compareIds(final String id1, final String id2) {
+    final String[] parts1 = id1.split("_");
+    final String[] parts2 = id2.split("_");
+    for (int k = 0; k < Math.min(parts1.length, parts2.length); ++k) {
+      final boolean numbers = parts1[k].matches("\\d{1,9}") && parts2[k].matches("\\d{1,9}");
+      final int order = numbers ? Integer.compare(Integer.parseInt(parts1[k]), Integer.parseInt(parts2[k]))
+          : parts1[k].compareTo(parts2[k]);
+      if (order != 0) {
+        return order;
+      }
+    }
+    return Integer.compare(parts1.length, parts2.length);
+  }
+
+  /**
+   * @param id the id of a fingerprint.
+   * @return the finger of the fingerprint, the part of its id before the first
+   *         <code>'_'</code>.
+   */
+  public static String finger(final String id) {
+    final int separator = id.indexOf('_');
+    return separator < 0 ? id : id.substring(0, separator);
+  }
+
+  /**
+   * @return the number of fingerprints.
+   */
+  public int size() {
+    return ids.size();
+  }
+
+  /**
+   * @param index the index of a fingerprint.
+   * @return the id of the fingerprint.
+   */
+  public String id(final int index) {
+    return ids.get(index);
+  }
+
+  /**
+   * @param index the index of a fingerprint.
+   * @return the template of the fingerprint, to evaluate another matcher
+   *         without extracting the templates again.
+   */
+  public FingerprintTemplate template(final int index) {
+    return templates.get(index);
+  }
+
+  /**
+   * @return the way the alignments were searched.
+   */
+  public MatchStrategy strategy() {
+    return strategy;
+  }
+
+  /**
+   * @return <code>true</code> if each unordered pair was scored once.
+   */
+  public boolean symmetric() {
+    return symmetric;
+  }
+
+  /**
+   * @param i the index of the first fingerprint.
+   * @param j the index of the second fingerprint.
+   * @return the score of the fingerprints, <code>0</code> if they do not match
+   *         and if <code>i == j</code>.
+   */
+  public int score(final int i, final int j) {
+    return scores[i * size() + j];
+  }
+
+  /**
+   * @param i the index of the first fingerprint.
+   * @param j the index of the second fingerprint.
+   * @return <code>true</code> if the fingerprints are of the same finger.
+   */
+  public boolean genuine(final int i, final int j) {
+    return finger(ids.get(i)).equals(finger(ids.get(j)));
+  }
+
+  /**
+   * @return the number of ordered pairs of different fingerprints of the same
+   *         finger.
+   */
+  public long genuinePairs() {
+    return countPairs(true, false);
+  }
+
+  /**
+   * @return the number of ordered pairs of fingerprints of different fingers.
+   */
+  public long impostorPairs() {
+    return countPairs(false, false);
+  }
+
+  /**
+   * @return the number of ordered pairs of fingerprints of different fingers
+   *         that match.
+   */
+  public long falseMatches() {
+    return countPairs(false, true);
+  }
+
+  /**
+   * @return the number of ordered pairs of different fingerprints of the same
+   *         finger that do not match.
+   */
+  public long falseNonMatches() {
+    return genuinePairs() - countPairs(true, true);
+  }
+
+  /**
+   * @return the false match rate (FMR), the proportion of impostor pairs that
+   *         match.
+   */
+  public double falseMatchRate() {
+    final long impostors = impostorPairs();
+    return impostors == 0 ? 0 : (double) falseMatches() / impostors;
+  }
+
+  /**
+   * @return the false non-match rate (FNMR), the proportion of genuine pairs
+   *         that do not match.
+   */
+  public double falseNonMatchRate() {
+    final long genuines = genuinePairs();
+    return genuines == 0 ? 0 : (double) falseNonMatches() / genuines;
+  }
+
+  /**
+   * @param genuine <code>true</code> to count the genuine pairs,
+   *                <code>false</code> for the impostor pairs.
+   * @param matched <code>true</code> to count only the pairs that match.
+   * @return the number of ordered pairs of different fingerprints.
+   */
+  private long countPairs(final boolean genuine, final boolean matched) {
+    long count = 0;
+    for (int i = 0; i < size(); ++i) {
+      for (int j = 0; j < size(); ++j) {
+        if (i != j && genuine(i, j) == genuine && (!matched || score(i, j) >= Fingerprint.FOUND_THRESHOLD)) {
+          ++count;
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @return the number of pairs scored, half of the ordered pairs for a
+   *         symmetric evaluation.
+   */
+  public long pairsScored() {
+    final long pairs = (long) size() * (size() - 1);
+    return symmetric ? pairs / 2 : pairs;
+  }
+
+  /**
+   * @return the wall-clock time spent extracting the templates in
+   *         nanoseconds, <code>0</code> if they were given.
+   */
+  public long extractionTime() {
+    return extractionTime;
+  }
+
+  /**
+   * @return the wall-clock time spent scoring the pairs in nanoseconds.
+   */
+  public long matchingTime() {
+    return matchingTime;
+  }
+
+  /**
+   * @return the number of pairs scored per second.
+   */
+  public double pairsPerSecond() {
+    return matchingTime == 0 ? 0 : pairsScored() * 1e9 / matchingTime;
+  }
+
+  /**
+   * Writes the score matrix as tab-separated values, with the ids as the
+   * first row and the first column.
+   *
+   * @param file the file written.
+   * @throws IOException if the file cannot be written.
+   */
+  public void writeScores(final Path file) throws IOException {
+    try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+      for (final String id : ids) {
+        writer.write('\t');
+        writer.write(id);
+      }
+      writer.newLine();
+      for (int i = 0; i < size(); ++i) {
+        writer.write(ids.get(i));
+        for (int j = 0; j < size(); ++j) {
+          writer.write('\t');
+          writer.write(Integer.toString(score(i, j)));
+        }
+        writer.newLine();
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s%s, %d fingerprints: FMR %.4f (%d/%d), FNMR %.4f (%d/%d), "
+        + "extraction %.1f s, matching %.1f s, %.0f pairs/s", strategy, symmetric ? " (symmetric)" : "", size(),
+        falseMatchRate(), falseMatches(), impostorPairs(), falseNonMatchRate(), falseNonMatches(), genuinePairs(),
+        extractionTime / 1e9, matchingTime / 1e9, pairsPerSecond());
+  }
+
+  /**
+   * Scores the rows <code>from</code> to <code>to</code> of the matrix, split
+   * in halves until a single row is left.
+   */
+  @SuppressWarnings("serial")
+  private static final class Rows extends RecursiveAction {
+
+    private final List<FingerprintTemplate> templates;
+    private final MatchStrategy strategy;
+    private final boolean symmetric;
+    private final int[] scores;
+    private final int from;
+    private final int to;
+
+    Rows(final List<FingerprintTemplate> templates, final MatchStrategy strategy, final boolean symmetric,
+        final int[] scores, final int from, final int to) {
+      this.templates = templates;
+      this.strategy = strategy;
+      this.symmetric = symmetric;
+      this.scores = scores;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > 1) {
+        final int middle = (from + to) >>> 1;
+        invokeAll(new Rows(templates, strategy, symmetric, scores, from, middle),
+            new Rows(templates, strategy, symmetric, scores, middle, to));
+        return;
+      }
+      final MatchingEngine engine = new MatchingEngine();
+      final int size = templates.size();
+      for (int i = from; i < to; ++i) {
+        for (int j = symmetric ? i + 1 : 0; j < size; ++j) {
+          if (i != j) {
+            scores[i * size + j] = engine.score(templates.get(i), templates.get(j), strategy, Integer.MAX_VALUE);
+          }
+        }
+      }
+    }
+  }
+}
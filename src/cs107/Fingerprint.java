@@ -3,6 +3,11 @@ package cs107;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Provides tools to compare fingerprint.
@@ -37,6 +42,49 @@ public class Fingerprint {
    */
   public static final int MATCH_ANGLE_OFFSET = 2;
 
+  /**
+   * The type of a minutia whose type was not extracted, compatible with every
+   * type.
+   */
+  public static final int MINUTIA_UNKNOWN = 0;
+
+  /**
+   * The type of a ridge ending, a minutia with 1 transition.
+   */
+  public static final int MINUTIA_ENDING = 1;
+
+  /**
+   * The type of a ridge bifurcation, a minutia with 3 transitions.
+   */
+  public static final int MINUTIA_BIFURCATION = 3;
+
+  /**
+   * The width in degrees of the rotation bins of the Hough accumulator.
+   */
+  public static final int HOUGH_ROTATION_BIN = 8;
+
+  /**
+   * The width in pixels of the translation bins of the Hough accumulator.
+   */
+  public static final int HOUGH_TRANSLATION_BIN = 5;
+
+  /**
+   * The number of bins of the Hough accumulator with the most votes that are
+   * verified.
+   */
+  public static final int HOUGH_PEAKS = 8;
+
+  /**
+   * The number of nearest minutiae in the descriptor of a minutia.
+   */
+  public static final int DESCRIPTOR_NEIGHBOURS = 6;
+
+  /**
+   * The number of similar neighbours two minutiae need in their descriptors
+   * to be used as the anchor of an alignment.
+   */
+  public static final int DESCRIPTOR_MIN_SIMILARITY = 3;
+
   /**
    * Returns an array containing the value of the 8 neighbours of the pixel at
    * coordinates <code>(row, col)</code>.
@@ -126,6 +174,56 @@ public class Fingerprint {
       return neighbours;
   }
 
+  /**
+   * Returns an array containing the value of the 8 neighbours of the pixel at
+   * coordinates <code>(row, col)</code> of a packed image.
+   * <p>
+   * Same conventions as {@link #getNeighbours(boolean[][], int, int)}.
+   *
+   * @param image the packed image.
+   * @param row   the row of the pixel of interest.
+   * @param col   the column of the pixel of interest.
+   * @return An array containing each neighbours' value.
+   */
+  public static boolean[] getNeighbours(BinaryImage image, int row, int col) {
+	  assert (image != null);
+
+	  //if row and col refer to a pixel out of image bounds, return null
+	  if (row >= image.height() || col >= image.width()) {
+		  return null;
+	  }
+
+	  //out of bounds neighbours are considered white by getOrWhite
+	  boolean[] neighbours = new boolean[8];
+	  neighbours[0] = image.getOrWhite(row - 1, col);
+	  neighbours[1] = image.getOrWhite(row - 1, col + 1);
+	  neighbours[2] = image.getOrWhite(row, col + 1);
+	  neighbours[3] = image.getOrWhite(row + 1, col + 1);
+	  neighbours[4] = image.getOrWhite(row + 1, col);
+	  neighbours[5] = image.getOrWhite(row + 1, col - 1);
+	  neighbours[6] = image.getOrWhite(row, col - 1);
+	  neighbours[7] = image.getOrWhite(row - 1, col - 1);
+	  return neighbours;
+  }
+
+  /**
+   * Returns the 8 neighbours of the pixel at coordinates <code>(row, col)</code>
+   * of a padded image as a mask, without allocating: bit <code>k</code> is the
+   * value of neighbour <code>k</code> as numbered in
+   * {@link #getNeighbours(boolean[][], int, int)}.
+   *
+   * @param image the padded image.
+   * @param row   the row of the pixel of interest, must be in bounds.
+   * @param col   the column of the pixel of interest, must be in bounds.
+   * @return the neighbours as a mask, between <code>0</code> and
+   *         <code>255</code>.
+   */
+  public static int getNeighbours(PaddedBinaryImage image, int row, int col) {
+	  assert (image != null);
+	  assert (0 <= row && row < image.height() && 0 <= col && col < image.width());
+	  return image.neighbourMask(row, col);
+  }
+
   /**
    * Computes the number of black (<code>true</code>) pixels among the neighbours
    * of a pixel.
@@ -152,6 +250,17 @@ public class Fingerprint {
 	  return numberBlackNeighbours;
   }
   
+  /**
+   * Computes the number of black pixels among the neighbours of a pixel.
+   *
+   * @param neighbours the neighbours as a mask, as returned by
+   *                   {@link #getNeighbours(PaddedBinaryImage, int, int)}.
+   * @return the number of black neighbours.
+   */
+  public static int blackNeighbours(int neighbours) {
+	  return Integer.bitCount(neighbours & 0xFF);
+  }
+
   /**
    * Computes the number of white to black transitions among the neighbours of
    * pixel.
@@ -181,6 +290,45 @@ public class Fingerprint {
 	  return numberTransitions;
   }
 
+  /**
+   * Computes the number of white to black transitions among the neighbours of
+   * pixel.
+   *
+   * @param neighbours the neighbours as a mask, as returned by
+   *                   {@link #getNeighbours(PaddedBinaryImage, int, int)}.
+   * @return the number of white to black transitions.
+   */
+  public static int transitions(int neighbours) {
+	  return TRANSITIONS[neighbours & 0xFF];
+  }
+
+  /**
+   * The number of transitions of each neighbours mask, used by
+   * {@link #transitions(int)}.
+   */
+  private static final int[] TRANSITIONS = new int[256];
+
+  static {
+	  for (int mask = 0; mask < 256; ++mask) {
+		  TRANSITIONS[mask] = transitions(toNeighbours(mask));
+	  }
+  }
+
+  /**
+   * Converts a neighbours mask to the array representation of
+   * {@link #getNeighbours(boolean[][], int, int)}.
+   *
+   * @param neighbours the neighbours as a mask.
+   * @return An array containing each neighbours' value.
+   */
+  private static boolean[] toNeighbours(int neighbours) {
+	  boolean[] result = new boolean[8];
+	  for (int k = 0; k < 8; ++k) {
+		  result[k] = (neighbours & (1 << k)) != 0;
+	  }
+	  return result;
+  }
+
   /**
    * Returns <code>true</code> if the images are identical and false otherwise.
    *
@@ -212,6 +360,20 @@ public class Fingerprint {
 	  return true; //if no incompatibilities are found, return true (identical)
   }
 
+  /**
+   * Returns <code>true</code> if the packed images are identical and false
+   * otherwise.
+   *
+   * @param image1 the first packed image.
+   * @param image2 the second packed image.
+   * @return <code>True</code> if they are identical, <code>false</code>
+   *         otherwise.
+   */
+  public static boolean identical(BinaryImage image1, BinaryImage image2) {
+	  assert (image1 != null & image2 != null);
+	  return image1.equals(image2);
+  }
+
   /**
    * Internal method used by {@link #thin(boolean[][])}.
    *
@@ -224,6 +386,205 @@ public class Fingerprint {
 	  //image assumed not null
 	  assert (image!=null);
 	  
+	  //adapter over the packed implementation
+	  return thinningStep(BinaryImage.fromArray(image), step).toArray();
+  }
+
+  /**
+   * Internal method used by {@link #thin(BinaryImage)}.
+   * <p>
+   * Each black pixel's neighbourhood is encoded with
+   * {@link #neighbourCode(BinaryImage, int, int)} and the decision to remove it
+   * is read from {@link #REMOVABLE}.
+   *
+   * @param image the packed image.
+   * @param step  the step to apply, Step 0 or Step 1.
+   * @return A new packed image containing each pixel's value after the step.
+   */
+  public static BinaryImage thinningStep(BinaryImage image, int step) {
+	  assert (image != null);
+	  assert (step == 0 || step == 1);
+
+	  //black pixels are copied over unless they are removed by the step
+	  BinaryImage imageCopy = image.copy();
+	  thinningStep(image, imageCopy, step, 0, image.height());
+	  return imageCopy;
+  }
+
+  /**
+   * Applies a thinning step to the rows <code>fromRow</code>(included) to
+   * <code>toRow</code>(excluded) of an image. The neighbours are read from
+   * <code>image</code>, including the rows just outside the range, while the
+   * removed pixels are cleared in <code>target</code>, which must hold a copy of
+   * those rows.
+   *
+   * @param image   the packed image before the step.
+   * @param target  the packed image receiving the result of the step.
+   * @param step    the step to apply, Step 0 or Step 1.
+   * @param fromRow the first row to process.
+   * @param toRow   the row after the last row to process.
+   * @return <code>true</code> if at least one pixel was removed.
+   */
+  static boolean thinningStep(BinaryImage image, BinaryImage target, int step, int fromRow, int toRow) {
+	  long[] words = image.words();
+	  long[] targetWords = target.words();
+	  int wordsPerRow = image.wordsPerRow();
+	  boolean[] removable = REMOVABLE[step];
+	  boolean changed = false;
+
+	  //only black pixels can be removed: iterate over the set bits of each row
+	  for (int i = fromRow; i < toRow; ++i) {
+		  for (int w = 0; w < wordsPerRow; ++w) {
+			  long word = words[i * wordsPerRow + w];
+			  while (word != 0) {
+				  long bit = word & -word;
+				  int j = w * BinaryImage.WORD_SIZE + Long.numberOfTrailingZeros(word);
+				  word ^= bit;
+
+				  if (removable[neighbourCode(image, i, j)]) {
+					  targetWords[i * wordsPerRow + w] &= ~bit; //black pixel not copied over
+					  changed = true;
+				  }
+			  }
+		  }
+	  }
+	  return changed;
+  }
+
+  /**
+   * For each step, whether a black pixel whose neighbourhood has a given
+   * {@link #neighbourCode(BinaryImage, int, int) code} is removed by
+   * {@link #thinningStep(BinaryImage, int)}.
+   */
+  private static final boolean[][] REMOVABLE = new boolean[2][256];
+
+  static {
+	  for (int code = 0; code < 256; ++code) {
+		  boolean[] neighbours = toNeighbours(code);
+		  REMOVABLE[0][code] = isRemovable(neighbours, 0);
+		  REMOVABLE[1][code] = isRemovable(neighbours, 1);
+	  }
+  }
+
+  /**
+   * Checks the conditions for a black pixel to be removed by a thinning step.
+   *
+   * @param neighbours the neighbours of the pixel, as returned by
+   *                   {@link #getNeighbours(boolean[][], int, int)}.
+   * @param step       the step to apply, Step 0 or Step 1.
+   * @return <code>true</code> if the pixel is removed.
+   */
+  private static boolean isRemovable(boolean[] neighbours, int step) {
+	  int blackNeighbours = blackNeighbours(neighbours);
+
+	  //Checking for conditions that are common to both steps
+	  if (blackNeighbours < 2 || blackNeighbours > 6 || transitions(neighbours) != 1) {
+		  return false;
+	  }
+	  //conditions particular to step 0
+	  if (step == 0) {
+		  return (!neighbours[0] || !neighbours[2] || !neighbours[4])
+				  && (!neighbours[2] || !neighbours[4] || !neighbours[6]);
+	  }
+	  //conditions particular to step 1
+	  return (!neighbours[0] || !neighbours[6] || !neighbours[2])
+			  && (!neighbours[0] || !neighbours[4] || !neighbours[6]);
+  }
+
+  /**
+   * Encodes the 8 neighbours of the pixel at <code>(row, col)</code> of a packed
+   * image: bit <code>k</code> of the result is the value of neighbour
+   * <code>k</code> as numbered in {@link #getNeighbours(boolean[][], int, int)}.
+   * Out of bounds neighbours are considered white.
+   *
+   * @param image the packed image.
+   * @param row   the row of the pixel of interest.
+   * @param col   the column of the pixel of interest.
+   * @return the neighbourhood code, between <code>0</code> and <code>255</code>.
+   */
+  private static int neighbourCode(BinaryImage image, int row, int col) {
+	  //bit 0 is col - 1, bit 1 is col and bit 2 is col + 1
+	  int up = rowTriplet(image, row - 1, col);
+	  int middle = rowTriplet(image, row, col);
+	  int down = rowTriplet(image, row + 1, col);
+
+	  return ((up >> 1) & 1)
+			  | ((up >> 2) & 1) << 1
+			  | ((middle >> 2) & 1) << 2
+			  | ((down >> 2) & 1) << 3
+			  | ((down >> 1) & 1) << 4
+			  | (down & 1) << 5
+			  | (middle & 1) << 6
+			  | (up & 1) << 7;
+  }
+
+  /**
+   * Reads the pixels <code>col - 1</code>, <code>col</code> and
+   * <code>col + 1</code> of a row as the bits 0, 1 and 2 of the result. Out of
+   * bounds pixels are considered white.
+   *
+   * @param image the packed image.
+   * @param row   the row to read, may be out of bounds.
+   * @param col   the column of the middle pixel.
+   * @return the 3 pixels as bits.
+   */
+  private static int rowTriplet(BinaryImage image, int row, int col) {
+	  if (row < 0 || row >= image.height()) {
+		  return 0;
+	  }
+	  long[] words = image.words();
+	  int wordsPerRow = image.wordsPerRow();
+	  int index = row * wordsPerRow + (col >>> 6);
+	  int bit = col & (BinaryImage.WORD_SIZE - 1);
+	  long word = words[index];
+
+	  //the bits past the width of the image are always white
+	  int triplet = (int) (word >>> bit) & 1;
+	  triplet <<= 1;
+	  if (bit < BinaryImage.WORD_SIZE - 1) {
+		  triplet |= ((int) (word >>> (bit + 1)) & 1) << 2;
+	  } else if ((col >>> 6) + 1 < wordsPerRow) {
+		  triplet |= ((int) words[index + 1] & 1) << 2;
+	  }
+	  if (bit > 0) {
+		  triplet |= (int) (word >>> (bit - 1)) & 1;
+	  } else if (col > 0) {
+		  triplet |= (int) (words[index - 1] >>> (BinaryImage.WORD_SIZE - 1)) & 1;
+	  }
+	  return triplet;
+  }
+
+  /**
+   * Compute the skeleton of a boolean image.
+   *
+   * @param image array containing each pixel's boolean value.
+   * @return array containing the boolean value of each pixel of the image after
+   *         applying the thinning algorithm.
+   */
+  public static boolean[][] thin(boolean[][] image) {
+	  //image is assumed to always be a rectangle
+	  //image is assumed not null
+	  assert(image!=null);
+	  
+	  //adapter over the packed implementation
+	  return thin(BinaryImage.fromArray(image)).toArray();
+  }
+
+  /**
+   * The thinning step as it was written before the lookup tables, pixel by
+   * pixel through {@link #getNeighbours(boolean[][], int, int)}. It is kept,
+   * with {@link #thinReference(boolean[][])}, as the reference the faster
+   * kernels are checked against.
+   *
+   * @param image array containing each pixel's boolean value.
+   * @param step  the step to apply, Step 0 or Step 1.
+   * @return A new array containing each pixel's value after the step.
+   */
+  static boolean[][] thinningStepReference(boolean[][] image, int step) {
+	  //image assumed rectangular
+	  //image assumed not null
+	  assert (image!=null);
+	  
 	  //initialising array to store thin version of image
 	  boolean[][] imageCopy = new boolean[image.length][image[0].length];
 	  
@@ -264,15 +625,17 @@ public class Fingerprint {
 	  }
 	  return imageCopy;
   }
-  
+
   /**
-   * Compute the skeleton of a boolean image.
+   * Computes the skeleton of a boolean image with
+   * {@link #thinningStepReference(boolean[][], int)}, as
+   * {@link #thin(boolean[][])} did before the packed kernels.
    *
    * @param image array containing each pixel's boolean value.
    * @return array containing the boolean value of each pixel of the image after
    *         applying the thinning algorithm.
    */
-  public static boolean[][] thin(boolean[][] image) {
+  static boolean[][] thinReference(boolean[][] image) {
 	  //image is assumed to always be a rectangle
 	  //image is assumed not null
 	  assert(image!=null);
@@ -293,8 +656,8 @@ public class Fingerprint {
 	  //iterate while image is not thin 
 	  while (!thin) {
 		  
-		  imageCopy1=thinningStep(imageCopy1,0);
-		  imageCopy1=thinningStep(imageCopy1,1);
+		  imageCopy1=thinningStepReference(imageCopy1,0);
+		  imageCopy1=thinningStepReference(imageCopy1,1);
 		  
 		  //stop iteration when the thinningStep no longer changes the image
 		  if (identical(imageCopy1, imageCopy2)) {
@@ -312,93 +675,651 @@ public class Fingerprint {
 	  return imageCopy1; //return thinned image
   }
 
-	/**
-	 * Computes all pixels that are connected to the pixel at coordinate
-	 * <code>(row, col)</code> and within the given distance of the pixel.
-	 *
-	 * @param image    array containing each pixel's boolean value.
-	 * @param row      the first coordinate of the pixel of interest.
-	 * @param col      the second coordinate of the pixel of interest.
-	 * @param distance the maximum distance at which a pixel is considered.
-	 * @return An array where <code>true</code> means that the pixel is within
-	 * <code>distance</code> and connected to the pixel at
-	 * <code>(row, col)</code>.
-	 */
-	public static boolean[][] connectedPixels(boolean[][] image, int row, int col, int distance) {
-	  //assert that the minutia pixel is black
-	  assert (image[row][col]);
-
-	  //initialising the final image of connected pixels (same size as image)
-	  boolean[][] connectedPixels = new boolean[image.length][image[0].length];
-	  
-	  //initialise list to store coordinates of all connectedPixels
-	  ArrayList<int[]> coordConnectedPixels = new ArrayList<>();
+  /**
+   * Extracts the minutiae from a thinned image pixel by pixel, as
+   * {@link #extract(boolean[][])} did before the packed image. It is kept as
+   * the reference the packed extraction is checked against.
+   *
+   * @param image array containing each pixel's boolean value.
+   * @return The list of all minutiae, in the format described in
+   *         {@link #extract(boolean[][])}.
+   */
+  static List<int[]> extractReference(boolean[][] image) {
 	  
-	  //adding the minutia pixel in the final image and coordinate list
-	  coordConnectedPixels.add(new int[]{row, col});
-	  connectedPixels [row][col] = true;
+	  //initialise List and other variables used in the loop
+	  List<int[]> minutiae = new ArrayList<>();
+	  int transitions;
+	  int orientation;
 	  
-	  //initialising variables
-	  int j = 0;
-	  int x = row;
-	  int y = col;
-	  int[] coords = new int[] {x , y};
-
-	  //iterating over every found pixel and checking for its neighbours until every connected pixel within distance is found
-	  while (j < coordConnectedPixels.size()) {
-
-		  //x and y are the coordinates of the current pixel
-		  x = coordConnectedPixels.get(j)[0];
-		  y = coordConnectedPixels.get(j)[1];
-
-		  //get the neighbours of current pixel
-		  boolean[] neighbours = getNeighbours(image, x, y);
-		  
-		  //assert neighbours is not null
-		  assert (neighbours != null);
-
-		  //iterate over every neighbour of the current pixel (if it is black and within distance, add to connectedPixels)
-		  for (int i = 0; i <= 7; ++i) {
+	  //loop over every pixel except those on the borders
+	  for (int i = 1; i < image.length - 1; ++i) {
+		  for (int j = 1; j < image[i].length - 1; ++j) {
 			  
-			  //checking if current neighbour is black
-			  if (neighbours[i]) {
-
-				  //using switch to get the coordinates of the current neighbour
-				  switch (i) {
-				  		case 0: coords = new int[] {x - 1, y};
-				  				break;
-				  		case 1: coords = new int[] {x - 1, y + 1};
-		  						break;
-				  		case 2: coords = new int[] {x, y + 1};
-		  						break;
-				  		case 3: coords = new int[] {x + 1, y + 1};
-		  						break;
-				  		case 4: coords = new int[] {x + 1, y};
-		  						break;
-				  		case 5: coords = new int[] {x + 1, y - 1};
-		  						break;
-				  		case 6: coords = new int[] {x, y - 1};
-		  						break;
-				  		case 7: coords = new int[] {x - 1, y - 1};
-		  						break;
-				  }
-				  //check whether current neighbour has already been added and whether it is within distance of the minutia
-				  if (!contains(coordConnectedPixels, coords) && (coords[0] <= row + distance && coords[1] <= col + distance  && coords[0] >= row - distance && coords[1] >= col - distance)) {
-					  
-					  //adding current neighbour to connectedPixels and adding its coordinates to the list
-					  coordConnectedPixels.add(coords);
-					  connectedPixels[coords[0]][coords[1]] = true;
-				  }
+			  //find number of transitions
+			  transitions = transitions(getNeighbours(image, i, j));
+			  
+			  //if the pixel is a minutia (1 or 3 transitions), add it's row, col and orientation in the list
+			  if (image[i][j] && (transitions==1 || transitions==3)) {
+				  
+				  orientation = computeOrientation(image, i, j, ORIENTATION_DISTANCE);
+				  minutiae.add(new int[]{i, j, orientation});
 			  }
 		  }
-		  //increment j
-		  ++j;
 	  }
-	  return connectedPixels;
+	  //return the list
+	  return minutiae;
   }
-	
+
   /**
-   * Checks if an ArrayList of int[] contains a certain int[] element
+   * Compute the skeleton of a packed image.
+   *
+   * @param image the packed image.
+   * @return a new packed image after applying the thinning algorithm.
+   */
+  public static BinaryImage thin(BinaryImage image) {
+	  assert (image != null);
+
+	  //previous version of the image, used to check if the image has changed
+	  BinaryImage previous = image.copy();
+	  BinaryImage current = image;
+
+	  //iterate while image is not thin
+	  while (true) {
+		  current = thinningStep(current, 0);
+		  current = thinningStep(current, 1);
+
+		  //stop iteration when the thinningStep no longer changes the image
+		  if (identical(current, previous)) {
+			  return current;
+		  }
+		  previous.copyFrom(current);
+	  }
+  }
+
+  /**
+   * Compute the skeleton of a packed image, only revisiting the pixels whose
+   * neighbourhood changed.
+   * <p>
+   * A black pixel that was kept by a step stays kept by that step as long as
+   * none of its neighbours is removed. Each step therefore keeps a worklist of
+   * the pixels to examine, stored as a bitmap: initially every black pixel, then
+   * only the black neighbours of the pixels removed since the step was last
+   * applied. The image is thin when both worklists are empty. The result is
+   * identical to {@link #thin(BinaryImage)}.
+   *
+   * @param image the packed image.
+   * @return a new packed image after applying the thinning algorithm.
+   */
+  public static BinaryImage thinIncremental(BinaryImage image) {
+	  assert (image != null);
+
+	  int height = image.height();
+	  int wordsPerRow = image.wordsPerRow();
+	  BinaryImage current = image.copy();
+	  long[] currentWords = current.words();
+
+	  //every black pixel is a candidate for the first application of each step
+	  long[][] worklists = {image.copy().words(), image.copy().words()};
+	  boolean[] pending = {true, true};
+	  long[] removed = new long[currentWords.length];
+
+	  int step = 0;
+	  while (pending[0] || pending[1]) {
+		  long[] candidates = worklists[step];
+		  boolean[] removable = REMOVABLE[step];
+		  int firstRow = height;
+		  int lastRow = -1;
+
+		  //examine the candidates that are still black, emptying the worklist
+		  for (int i = 0; i < height; ++i) {
+			  for (int w = 0; w < wordsPerRow; ++w) {
+				  int index = i * wordsPerRow + w;
+				  long word = candidates[index] & currentWords[index];
+				  candidates[index] = 0;
+				  while (word != 0) {
+					  long bit = word & -word;
+					  int j = w * BinaryImage.WORD_SIZE + Long.numberOfTrailingZeros(word);
+					  word ^= bit;
+					  if (removable[neighbourCode(current, i, j)]) {
+						  removed[index] |= bit;
+						  firstRow = Math.min(firstRow, i);
+						  lastRow = i;
+					  }
+				  }
+			  }
+		  }
+		  pending[step] = false;
+
+		  //the removals of a step are applied once all candidates are examined
+		  if (lastRow >= 0) {
+			  for (int index = firstRow * wordsPerRow; index < (lastRow + 1) * wordsPerRow; ++index) {
+				  currentWords[index] &= ~removed[index];
+			  }
+
+			  //black neighbours of removed pixels must be examined again by both steps
+			  int from = Math.max(firstRow - 1, 0);
+			  int to = Math.min(lastRow + 1, height - 1);
+			  for (int i = from; i <= to; ++i) {
+				  for (int w = 0; w < wordsPerRow; ++w) {
+					  long neighbours = 0;
+					  for (int r = Math.max(i - 1, firstRow); r <= Math.min(i + 1, lastRow); ++r) {
+						  neighbours |= dilateRow(removed, r * wordsPerRow, wordsPerRow, w);
+					  }
+					  int index = i * wordsPerRow + w;
+					  neighbours &= currentWords[index];
+					  if (neighbours != 0) {
+						  worklists[0][index] |= neighbours;
+						  worklists[1][index] |= neighbours;
+						  pending[0] = true;
+						  pending[1] = true;
+					  }
+				  }
+			  }
+			  Arrays.fill(removed, firstRow * wordsPerRow, (lastRow + 1) * wordsPerRow, 0);
+		  }
+		  step = 1 - step;
+	  }
+	  return current;
+  }
+
+  /**
+   * Computes word <code>w</code> of a packed row where each pixel is black if it
+   * or one of its horizontal neighbours is black.
+   *
+   * @param words       the packed pixels.
+   * @param offset      the index of the first word of the row.
+   * @param wordsPerRow the number of words of the row.
+   * @param w           the index of the word in the row.
+   * @return the dilated word.
+   */
+  private static long dilateRow(long[] words, int offset, int wordsPerRow, int w) {
+	  long word = words[offset + w];
+	  long dilated = word | (word << 1) | (word >>> 1);
+	  if (w > 0) {
+		  dilated |= words[offset + w - 1] >>> (BinaryImage.WORD_SIZE - 1);
+	  }
+	  if (w + 1 < wordsPerRow) {
+		  dilated |= words[offset + w + 1] << (BinaryImage.WORD_SIZE - 1);
+	  }
+	  return dilated;
+  }
+
+  /**
+   * Compute the skeleton of a boolean image with
+   * {@link #thinIncremental(BinaryImage)}.
+   *
+   * @param image array containing each pixel's boolean value.
+   * @return array containing the boolean value of each pixel of the image after
+   *         applying the thinning algorithm.
+   */
+  public static boolean[][] thinIncremental(boolean[][] image) {
+	  assert (image != null);
+	  return thinIncremental(BinaryImage.fromArray(image)).toArray();
+  }
+
+  /**
+   * The default minimum number of rows processed by one task in
+   * {@link #thinParallel(BinaryImage)}.
+   */
+  public static final int THINNING_BAND_HEIGHT = 32;
+
+  /**
+   * Compute the skeleton of a packed image using the common fork/join pool.
+   *
+   * @param image the packed image.
+   * @return a new packed image after applying the thinning algorithm.
+   * @see #thinParallel(BinaryImage, ForkJoinPool, int)
+   */
+  public static BinaryImage thinParallel(BinaryImage image) {
+	  return thinParallel(image, ForkJoinPool.commonPool(), THINNING_BAND_HEIGHT);
+  }
+
+  /**
+   * Compute the skeleton of a packed image, splitting each step into horizontal
+   * bands processed in parallel.
+   * <p>
+   * A step only reads the image as it was before the step, so each band reads
+   * its rows plus one row above and below from the previous image, and writes
+   * its own rows of the next image. The image is thin when no band changed
+   * during both steps. The result is identical to {@link #thin(BinaryImage)}.
+   *
+   * @param image         the packed image.
+   * @param pool          the pool running the bands.
+   * @param minBandHeight the minimum number of rows of a band, at least
+   *                      <code>1</code>.
+   * @return a new packed image after applying the thinning algorithm.
+   */
+  public static BinaryImage thinParallel(BinaryImage image, ForkJoinPool pool, int minBandHeight) {
+	  assert (image != null && pool != null);
+	  assert (minBandHeight >= 1);
+
+	  BinaryImage current = image.copy();
+	  BinaryImage next = image.copy();
+	  boolean changed = true;
+
+	  //iterate while the steps change the image
+	  while (changed) {
+		  changed = false;
+		  for (int step = 0; step <= 1; ++step) {
+			  if (pool.invoke(new ThinningBand(current, next, step, 0, image.height(), minBandHeight))) {
+				  changed = true;
+				  current.copyFrom(next);
+			  }
+		  }
+	  }
+	  return current;
+  }
+
+  /**
+   * Task applying a thinning step to a band of rows, split in two halves while
+   * it is higher than twice the minimum band height.
+   */
+  @SuppressWarnings("serial")
+  private static final class ThinningBand extends RecursiveTask<Boolean> {
+
+	  private final BinaryImage image;
+	  private final BinaryImage target;
+	  private final int step;
+	  private final int fromRow;
+	  private final int toRow;
+	  private final int minBandHeight;
+
+	  ThinningBand(BinaryImage image, BinaryImage target, int step, int fromRow, int toRow, int minBandHeight) {
+		  this.image = image;
+		  this.target = target;
+		  this.step = step;
+		  this.fromRow = fromRow;
+		  this.toRow = toRow;
+		  this.minBandHeight = minBandHeight;
+	  }
+
+	  @Override
+	  protected Boolean compute() {
+		  if (toRow - fromRow < 2 * minBandHeight) {
+			  return thinningStep(image, target, step, fromRow, toRow);
+		  }
+		  int middle = (fromRow + toRow) >>> 1;
+		  ThinningBand top = new ThinningBand(image, target, step, fromRow, middle, minBandHeight);
+		  ThinningBand bottom = new ThinningBand(image, target, step, middle, toRow, minBandHeight);
+		  top.fork();
+		  boolean changed = bottom.compute();
+		  return top.join() | changed;
+	  }
+  }
+
+  /**
+   * Compute the skeleton of a packed image, evaluating the conditions of each
+   * step for 64 pixels at a time.
+   * <p>
+   * For each word of a row, the 8 neighbours of its 64 pixels are themselves
+   * words, obtained by shifting the words of the row and of the rows above and
+   * below. The conditions of {@link #thinningStep(boolean[][], int)} are then
+   * evaluated with bitwise operations: the number of black neighbours with a
+   * bit-sliced adder, the number of transitions by tracking which pixels have
+   * seen one and two transitions. The result is identical to
+   * {@link #thin(BinaryImage)}.
+   *
+   * @param image the packed image.
+   * @return a new packed image after applying the thinning algorithm.
+   */
+  public static BinaryImage thinBitSliced(BinaryImage image) {
+	  assert (image != null);
+
+	  BinaryImage current = image.copy();
+	  BinaryImage next = image.copy();
+	  boolean changed = true;
+
+	  //iterate while the steps change the image
+	  while (changed) {
+		  changed = false;
+		  for (int step = 0; step <= 1; ++step) {
+			  if (thinningStepBitSliced(current, next, step)) {
+				  changed = true;
+				  current.copyFrom(next);
+			  }
+		  }
+	  }
+	  return current;
+  }
+
+  /**
+   * Applies a thinning step to a whole image, 64 pixels at a time, as described
+   * in {@link #thinBitSliced(BinaryImage)}.
+   *
+   * @param image  the packed image before the step.
+   * @param target the packed image receiving the result of the step, which must
+   *               hold a copy of <code>image</code>.
+   * @param step   the step to apply, Step 0 or Step 1.
+   * @return <code>true</code> if at least one pixel was removed.
+   */
+  static boolean thinningStepBitSliced(BinaryImage image, BinaryImage target, int step) {
+	  long[] words = image.words();
+	  long[] targetWords = target.words();
+	  int height = image.height();
+	  int wordsPerRow = image.wordsPerRow();
+	  boolean changed = false;
+
+	  for (int i = 0; i < height; ++i) {
+		  int offset = i * wordsPerRow;
+		  for (int w = 0; w < wordsPerRow; ++w) {
+			  long middle = words[offset + w];
+			  //only black pixels can be removed
+			  if (middle == 0) {
+				  continue;
+			  }
+			  //out of bounds rows are white
+			  int up = i > 0 ? offset - wordsPerRow : -1;
+			  int down = i + 1 < height ? offset + wordsPerRow : -1;
+
+			  //neighbours numbered as in getNeighbours, bit b being the pixel of column 64 * w + b
+			  long n0 = word(words, up, wordsPerRow, w);
+			  long n1 = east(words, up, wordsPerRow, w);
+			  long n2 = east(words, offset, wordsPerRow, w);
+			  long n3 = east(words, down, wordsPerRow, w);
+			  long n4 = word(words, down, wordsPerRow, w);
+			  long n5 = west(words, down, wordsPerRow, w);
+			  long n6 = west(words, offset, wordsPerRow, w);
+			  long n7 = west(words, up, wordsPerRow, w);
+
+			  //number of black neighbours as the bits c3 c2 c1 c0, using full adders
+			  long s01 = n0 ^ n1, c01 = n0 & n1;
+			  long s23 = n2 ^ n3, c23 = n2 & n3;
+			  long s45 = n4 ^ n5, c45 = n4 & n5;
+			  long s67 = n6 ^ n7, c67 = n6 & n7;
+			  long s03 = s01 ^ s23, k03 = s01 & s23;
+			  long s47 = s45 ^ s67, k47 = s45 & s67;
+			  long c0 = s03 ^ s47, k07 = s03 & s47;
+			  //the twos: c01 + c23 + k03 for the left half, c45 + c67 + k47 for the right half
+			  long t03 = c01 ^ c23 ^ k03, f03 = (c01 & c23) | (k03 & (c01 ^ c23));
+			  long t47 = c45 ^ c67 ^ k47, f47 = (c45 & c67) | (k47 & (c45 ^ c67));
+			  long c1 = t03 ^ t47 ^ k07;
+			  long f07 = (t03 & t47) | (k07 & (t03 ^ t47));
+			  //the fours: f03 + f47 + f07 is at most 2, as there are at most 8 neighbours
+			  long c2 = f03 ^ f47 ^ f07;
+			  long c3 = (f03 & f47) | (f07 & (f03 ^ f47));
+			  //2 <= count <= 6 excludes 0, 1, 7 and 8
+			  long blackCondition = ~(c3 | (~c2 & ~c1) | (c2 & c1 & c0));
+
+			  //exactly one white to black transition
+			  long one = 0;
+			  long two = 0;
+			  long t;
+			  t = ~n0 & n1; two |= one & t; one |= t;
+			  t = ~n1 & n2; two |= one & t; one |= t;
+			  t = ~n2 & n3; two |= one & t; one |= t;
+			  t = ~n3 & n4; two |= one & t; one |= t;
+			  t = ~n4 & n5; two |= one & t; one |= t;
+			  t = ~n5 & n6; two |= one & t; one |= t;
+			  t = ~n6 & n7; two |= one & t; one |= t;
+			  t = ~n7 & n0; two |= one & t; one |= t;
+			  long transitionCondition = one & ~two;
+
+			  //conditions particular to each step
+			  long stepCondition = step == 0
+					  ? ~(n0 & n2 & n4) & ~(n2 & n4 & n6)
+					  : ~(n0 & n6 & n2) & ~(n0 & n4 & n6);
+
+			  long removed = middle & blackCondition & transitionCondition & stepCondition;
+			  if (removed != 0) {
+				  targetWords[offset + w] &= ~removed;
+				  changed = true;
+			  }
+		  }
+	  }
+	  return changed;
+  }
+
+  /**
+   * @return word <code>w</code> of the row starting at <code>offset</code>, or
+   *         white if <code>offset</code> is negative.
+   */
+  private static long word(long[] words, int offset, int wordsPerRow, int w) {
+	  return offset < 0 ? 0 : words[offset + w];
+  }
+
+  /**
+   * @return the word where bit <code>b</code> is the pixel to the right of bit
+   *         <code>b</code> of word <code>w</code> of the row starting at
+   *         <code>offset</code>, white if <code>offset</code> is negative.
+   */
+  private static long east(long[] words, int offset, int wordsPerRow, int w) {
+	  if (offset < 0) {
+		  return 0;
+	  }
+	  long east = words[offset + w] >>> 1;
+	  if (w + 1 < wordsPerRow) {
+		  east |= words[offset + w + 1] << (BinaryImage.WORD_SIZE - 1);
+	  }
+	  return east;
+  }
+
+  /**
+   * @return the word where bit <code>b</code> is the pixel to the left of bit
+   *         <code>b</code> of word <code>w</code> of the row starting at
+   *         <code>offset</code>, white if <code>offset</code> is negative.
+   */
+  private static long west(long[] words, int offset, int wordsPerRow, int w) {
+	  if (offset < 0) {
+		  return 0;
+	  }
+	  long west = words[offset + w] << 1;
+	  if (w > 0) {
+		  west |= words[offset + w - 1] >>> (BinaryImage.WORD_SIZE - 1);
+	  }
+	  return west;
+  }
+
+	/**
+	 * Computes all pixels that are connected to the pixel at coordinate
+	 * <code>(row, col)</code> and within the given distance of the pixel.
+	 *
+	 * @param image    array containing each pixel's boolean value.
+	 * @param row      the first coordinate of the pixel of interest.
+	 * @param col      the second coordinate of the pixel of interest.
+	 * @param distance the maximum distance at which a pixel is considered.
+	 * @return An array where <code>true</code> means that the pixel is within
+	 * <code>distance</code> and connected to the pixel at
+	 * <code>(row, col)</code>.
+	 */
+	public static boolean[][] connectedPixels(boolean[][] image, int row, int col, int distance) {
+	  //assert that the minutia pixel is black
+	  assert (image[row][col]);
+
+	  //initialising the final image of connected pixels (same size as image)
+	  boolean[][] connectedPixels = new boolean[image.length][image[0].length];
+	  
+	  //initialise list to store coordinates of all connectedPixels
+	  ArrayList<int[]> coordConnectedPixels = new ArrayList<>();
+	  
+	  //adding the minutia pixel in the final image and coordinate list
+	  coordConnectedPixels.add(new int[]{row, col});
+	  connectedPixels [row][col] = true;
+	  
+	  //initialising variables
+	  int j = 0;
+	  int x = row;
+	  int y = col;
+	  int[] coords = new int[] {x , y};
+
+	  //iterating over every found pixel and checking for its neighbours until every connected pixel within distance is found
+	  while (j < coordConnectedPixels.size()) {
+
+		  //x and y are the coordinates of the current pixel
+		  x = coordConnectedPixels.get(j)[0];
+		  y = coordConnectedPixels.get(j)[1];
+
+		  //get the neighbours of current pixel
+		  boolean[] neighbours = getNeighbours(image, x, y);
+		  
+		  //assert neighbours is not null
+		  assert (neighbours != null);
+
+		  //iterate over every neighbour of the current pixel (if it is black and within distance, add to connectedPixels)
+		  for (int i = 0; i <= 7; ++i) {
+			  
+			  //checking if current neighbour is black
+			  if (neighbours[i]) {
+
+				  //using switch to get the coordinates of the current neighbour
+				  switch (i) {
+				  		case 0: coords = new int[] {x - 1, y};
+				  				break;
+				  		case 1: coords = new int[] {x - 1, y + 1};
+		  						break;
+				  		case 2: coords = new int[] {x, y + 1};
+		  						break;
+				  		case 3: coords = new int[] {x + 1, y + 1};
+		  						break;
+				  		case 4: coords = new int[] {x + 1, y};
+		  						break;
+				  		case 5: coords = new int[] {x + 1, y - 1};
+		  						break;
+				  		case 6: coords = new int[] {x, y - 1};
+		  						break;
+				  		case 7: coords = new int[] {x - 1, y - 1};
+		  						break;
+				  }
+				  //check whether current neighbour has already been added and whether it is within distance of the minutia
+				  if (!contains(coordConnectedPixels, coords) && (coords[0] <= row + distance && coords[1] <= col + distance  && coords[0] >= row - distance && coords[1] >= col - distance)) {
+					  
+					  //adding current neighbour to connectedPixels and adding its coordinates to the list
+					  coordConnectedPixels.add(coords);
+					  connectedPixels[coords[0]][coords[1]] = true;
+				  }
+			  }
+		  }
+		  //increment j
+		  ++j;
+	  }
+	  return connectedPixels;
+  }
+	
+  /**
+   * Computes all pixels of a packed image that are connected to the pixel at
+   * coordinate <code>(row, col)</code> and within the given distance of the
+   * pixel.
+   *
+   * @param image    the packed image.
+   * @param row      the first coordinate of the pixel of interest.
+   * @param col      the second coordinate of the pixel of interest.
+   * @param distance the maximum distance at which a pixel is considered.
+   * @return A packed image where black pixels are within <code>distance</code>
+   *         and connected to the pixel at <code>(row, col)</code>.
+   */
+  public static BinaryImage connectedPixels(BinaryImage image, int row, int col, int distance) {
+	  //assert that the minutia pixel is black
+	  assert (image.get(row, col));
+
+	  //the final image also marks the pixels that have already been found
+	  BinaryImage connectedPixels = new BinaryImage(image.height(), image.width());
+	  connectedPixels.set(row, col, true);
+
+	  //coordinates of the found pixels, at most every pixel within distance
+	  int side = 2 * distance + 1;
+	  int[] rows = new int[side * side];
+	  int[] cols = new int[side * side];
+	  rows[0] = row;
+	  cols[0] = col;
+	  int found = 1;
+
+	  //iterating over every found pixel and checking for its neighbours
+	  for (int j = 0; j < found; ++j) {
+		  int x = rows[j];
+		  int y = cols[j];
+		  for (int dx = -1; dx <= 1; ++dx) {
+			  for (int dy = -1; dy <= 1; ++dy) {
+				  int nx = x + dx;
+				  int ny = y + dy;
+
+				  //black, within distance of the minutia and not found yet
+				  if (image.getOrWhite(nx, ny)
+					&& nx <= row + distance && ny <= col + distance && nx >= row - distance && ny >= col - distance
+					&& !connectedPixels.get(nx, ny)) {
+					  connectedPixels.set(nx, ny, true);
+					  rows[found] = nx;
+					  cols[found] = ny;
+					  ++found;
+				  }
+			  }
+		  }
+	  }
+	  return connectedPixels;
+  }
+	
+  /**
+   * Row offset of each neighbour, numbered as in
+   * {@link #getNeighbours(boolean[][], int, int)}.
+   */
+  private static final int[] NEIGHBOUR_ROW = {-1, -1, 0, 1, 1, 1, 0, -1};
+
+  /**
+   * Column offset of each neighbour, numbered as in
+   * {@link #getNeighbours(boolean[][], int, int)}.
+   */
+  private static final int[] NEIGHBOUR_COL = {0, 1, 1, 1, 0, -1, -1, -1};
+
+  /**
+   * Computes all pixels of a padded image that are connected to the pixel at
+   * coordinate <code>(row, col)</code> and within the given distance of the
+   * pixel.
+   *
+   * @param image    the padded image.
+   * @param row      the first coordinate of the pixel of interest.
+   * @param col      the second coordinate of the pixel of interest.
+   * @param distance the maximum distance at which a pixel is considered.
+   * @return A packed image where black pixels are within <code>distance</code>
+   *         and connected to the pixel at <code>(row, col)</code>.
+   * @see #connectedPixels(PaddedBinaryImage, int, int, int, ConnectedPixels)
+   */
+  public static BinaryImage connectedPixels(PaddedBinaryImage image, int row, int col, int distance) {
+	  ConnectedPixels pixels = connectedPixels(image, row, col, distance, new ConnectedPixels(distance));
+	  BinaryImage connectedPixels = new BinaryImage(image.height(), image.width());
+	  for (int k = 0; k < pixels.size(); ++k) {
+		  connectedPixels.set(pixels.row(k), pixels.col(k), true);
+	  }
+	  return connectedPixels;
+  }
+
+  /**
+   * Computes all pixels of a padded image that are connected to the pixel at
+   * coordinate <code>(row, col)</code> and within the given distance of the
+   * pixel, only working inside the <code>(2 * distance + 1)</code> square window
+   * centred on the pixel.
+   *
+   * @param image    the padded image.
+   * @param row      the first coordinate of the pixel of interest.
+   * @param col      the second coordinate of the pixel of interest.
+   * @param distance the maximum distance at which a pixel is considered.
+   * @param result   the set receiving the connected pixels, emptied first, which
+   *                 allows the caller to reuse its buffers.
+   * @return <code>result</code>, containing the pixels within
+   *         <code>distance</code> and connected to the pixel at
+   *         <code>(row, col)</code>.
+   */
+  public static ConnectedPixels connectedPixels(PaddedBinaryImage image, int row, int col, int distance,
+      ConnectedPixels result) {
+	  //assert that the minutia pixel is black
+	  assert (image.get(row, col));
+
+	  result.reset(row, col, distance);
+	  result.add(row, col);
+
+	  //iterating over every found pixel and adding its black neighbours within the window
+	  for (int j = 0; j < result.size(); ++j) {
+		  int x = result.row(j);
+		  int y = result.col(j);
+		  int neighbours = image.neighbourMask(x, y);
+		  while (neighbours != 0) {
+			  int k = Integer.numberOfTrailingZeros(neighbours);
+			  neighbours &= neighbours - 1;
+			  result.add(x + NEIGHBOUR_ROW[k], y + NEIGHBOUR_COL[k]);
+		  }
+	  }
+	  return result;
+  }
+
+  /**
+   * Checks if an ArrayList of int[] contains a certain int[] element
    * 
    * @param list		a list
    * @param element		an element we are looking for in the list
@@ -450,6 +1371,84 @@ public class Fingerprint {
 		  return (sumSquareY / sumProductXY); }
   }
 
+  /**
+   * Computes the slope of a minutia using linear regression.
+   *
+   * @param connectedPixels the result of
+   *                        {@link #connectedPixels(BinaryImage, int, int, int)}.
+   * @param row             the row of the minutia.
+   * @param col             the col of the minutia.
+   * @return the slope.
+   */
+  public static double computeSlope(BinaryImage connectedPixels, int row, int col) {
+
+	  //initialise all 3 sum variables needed
+	  double sumSquareX = 0;
+	  double sumSquareY = 0;
+	  double sumProductXY = 0;
+
+	  //iterate over the black pixels and calculate the 3 sums
+	  //for each pixel, x = j - col and y = row - i
+	  long[] words = connectedPixels.words();
+	  int wordsPerRow = connectedPixels.wordsPerRow();
+	  for (int i = 0; i < connectedPixels.height(); ++i) {
+		  for (int w = 0; w < wordsPerRow; ++w) {
+			  long word = words[i * wordsPerRow + w];
+			  while (word != 0) {
+				  int j = w * BinaryImage.WORD_SIZE + Long.numberOfTrailingZeros(word);
+				  word &= word - 1;
+				  sumSquareX += (j - col) * (j - col);
+				  sumSquareY += (row - i) * (row - i);
+				  sumProductXY += (j - col) * (row - i);
+			  }
+		  }
+	  }
+	  //Particular case of vertical line
+	  if (sumSquareX == 0) {
+		  return Double.POSITIVE_INFINITY; }
+
+	  //Conditions for the two possible formulas of the slope
+	  else if (sumSquareX >= sumSquareY) {
+		  return (sumProductXY / sumSquareX); }
+	  else {
+		  return (sumSquareY / sumProductXY); }
+  }
+
+  /**
+   * Computes the slope of a minutia using linear regression.
+   *
+   * @param connectedPixels the result of
+   *                        {@link #connectedPixels(PaddedBinaryImage, int, int, int, ConnectedPixels)}.
+   * @return the slope.
+   */
+  public static double computeSlope(ConnectedPixels connectedPixels) {
+	  int row = connectedPixels.row();
+	  int col = connectedPixels.col();
+
+	  //initialise all 3 sum variables needed
+	  double sumSquareX = 0;
+	  double sumSquareY = 0;
+	  double sumProductXY = 0;
+
+	  //for each pixel, x = j - col and y = row - i
+	  for (int k = 0; k < connectedPixels.size(); ++k) {
+		  int x = connectedPixels.col(k) - col;
+		  int y = row - connectedPixels.row(k);
+		  sumSquareX += x * x;
+		  sumSquareY += y * y;
+		  sumProductXY += x * y;
+	  }
+	  //Particular case of vertical line
+	  if (sumSquareX == 0) {
+		  return Double.POSITIVE_INFINITY; }
+
+	  //Conditions for the two possible formulas of the slope
+	  else if (sumSquareX >= sumSquareY) {
+		  return (sumProductXY / sumSquareX); }
+	  else {
+		  return (sumSquareY / sumProductXY); }
+  }
+
   /**
    * Computes the orientation of a minutia in radians.
    * 
@@ -533,32 +1532,292 @@ public class Fingerprint {
 	  return angle;
   }
 
+  /**
+   * Computes the orientation of a minutia in radians.
+   *
+   * @param connectedPixels the result of
+   *                        {@link #connectedPixels(BinaryImage, int, int, int)}.
+   * @param row             the row of the minutia.
+   * @param col             the col of the minutia.
+   * @param slope           the slope as returned by
+   *                        {@link #computeSlope(BinaryImage, int, int)}.
+   * @return the orientation of the minutia in radians.
+   */
+  public static double computeAngle(BinaryImage connectedPixels, int row, int col, double slope) {
+
+	  int pixelsAbove = 0;
+	  int pixelsBelow = 0;
+	  boolean vertical = slope == Double.POSITIVE_INFINITY;
+	  boolean horizontal = Double.compare(slope, 0.0) == 0;
+
+	  //counting pixels above and below, using the criterion of the matching case
+	  long[] words = connectedPixels.words();
+	  int wordsPerRow = connectedPixels.wordsPerRow();
+	  for (int i = 0; i < connectedPixels.height(); ++i) {
+		  for (int w = 0; w < wordsPerRow; ++w) {
+			  long word = words[i * wordsPerRow + w];
+			  while (word != 0) {
+				  int j = w * BinaryImage.WORD_SIZE + Long.numberOfTrailingZeros(word);
+				  word &= word - 1;
+
+				  boolean above;
+				  if (vertical) {
+					  above = i < row;
+				  } else if (horizontal) {
+					  //pixels above are pixels to the left of the minutia
+					  above = (j - col) < 0;
+				  } else {
+					  //above the perpendicular to the slope going through the minutia
+					  above = (row-i) >= (-1/slope) * (j-col);
+				  }
+				  if (above) {
+					  pixelsAbove += 1; }
+				  else {
+					  pixelsBelow += 1; }
+			  }
+		  }
+	  }
+	  return orientedAngle(slope, pixelsAbove, pixelsBelow);
+  }
+
+  /**
+   * Computes the orientation of a minutia in radians.
+   *
+   * @param connectedPixels the result of
+   *                        {@link #connectedPixels(PaddedBinaryImage, int, int, int, ConnectedPixels)}.
+   * @param slope           the slope as returned by
+   *                        {@link #computeSlope(ConnectedPixels)}.
+   * @return the orientation of the minutia in radians.
+   */
+  public static double computeAngle(ConnectedPixels connectedPixels, double slope) {
+	  int row = connectedPixels.row();
+	  int col = connectedPixels.col();
+	  int pixelsAbove = 0;
+	  int pixelsBelow = 0;
+	  boolean vertical = slope == Double.POSITIVE_INFINITY;
+	  boolean horizontal = Double.compare(slope, 0.0) == 0;
+
+	  //counting pixels above and below, using the criterion of the matching case
+	  for (int k = 0; k < connectedPixels.size(); ++k) {
+		  int i = connectedPixels.row(k);
+		  int j = connectedPixels.col(k);
+		  boolean above;
+		  if (vertical) {
+			  above = i < row;
+		  } else if (horizontal) {
+			  above = (j - col) < 0;
+		  } else {
+			  above = (row-i) >= (-1/slope) * (j-col);
+		  }
+		  if (above) {
+			  pixelsAbove += 1; }
+		  else {
+			  pixelsBelow += 1; }
+	  }
+	  return orientedAngle(slope, pixelsAbove, pixelsBelow);
+  }
+
+  /**
+   * Computes the orientation of a minutia in degrees from its connected pixels,
+   * fusing {@link #computeSlope(ConnectedPixels)} and
+   * {@link #computeAngle(ConnectedPixels, double)}.
+   * <p>
+   * A single pass over the pixels accumulates the regression sums with integer
+   * arithmetic, together with the pixels above and below the minutia for the
+   * vertical and horizontal cases. Only in the general case, where the dividing
+   * line depends on the slope, are the pixels visited a second time. The result
+   * is the same as {@link #computeOrientation(boolean[][], int, int, int)}.
+   *
+   * @param connectedPixels the result of
+   *                        {@link #connectedPixels(PaddedBinaryImage, int, int, int, ConnectedPixels)}.
+   * @return The orientation in degrees.
+   */
+  public static int computeOrientation(ConnectedPixels connectedPixels) {
+	  int row = connectedPixels.row();
+	  int col = connectedPixels.col();
+	  int size = connectedPixels.size();
+
+	  //regression sums, for each pixel x = j - col and y = row - i
+	  long sumSquareX = 0;
+	  long sumSquareY = 0;
+	  long sumProductXY = 0;
+	  //pixels above the minutia (vertical case) and to its left (horizontal case)
+	  int pixelsUp = 0;
+	  int pixelsLeft = 0;
+	  for (int k = 0; k < size; ++k) {
+		  int x = connectedPixels.col(k) - col;
+		  int y = row - connectedPixels.row(k);
+		  sumSquareX += x * x;
+		  sumSquareY += y * y;
+		  sumProductXY += x * y;
+		  if (y > 0) {
+			  ++pixelsUp;
+		  }
+		  if (x < 0) {
+			  ++pixelsLeft;
+		  }
+	  }
+
+	  //same slope as computeSlope, the sums being exact in both cases
+	  double slope;
+	  if (sumSquareX == 0) {
+		  slope = Double.POSITIVE_INFINITY;
+	  } else if (sumSquareX >= sumSquareY) {
+		  slope = (double) sumProductXY / sumSquareX;
+	  } else {
+		  slope = (double) sumSquareY / sumProductXY;
+	  }
+
+	  int pixelsAbove;
+	  if (slope == Double.POSITIVE_INFINITY) {
+		  pixelsAbove = pixelsUp;
+	  } else if (Double.compare(slope, 0.0) == 0) {
+		  pixelsAbove = pixelsLeft;
+	  } else {
+		  //above the perpendicular to the slope, compared exactly as computeAngle does
+		  pixelsAbove = 0;
+		  double perpendicular = -1 / slope;
+		  for (int k = 0; k < size; ++k) {
+			  if ((row - connectedPixels.row(k)) >= perpendicular * (connectedPixels.col(k) - col)) {
+				  ++pixelsAbove;
+			  }
+		  }
+	  }
+	  return toOrientation(orientedAngle(slope, pixelsAbove, size - pixelsAbove));
+  }
+
+  /**
+   * Chooses the direction of a minutia from its slope and the number of
+   * connected pixels on each side, as described in
+   * {@link #computeAngle(boolean[][], int, int, double)}.
+   *
+   * @param slope       the slope of the minutia.
+   * @param pixelsAbove the number of pixels above (or to the left of) the
+   *                    minutia.
+   * @param pixelsBelow the number of pixels below (or to the right of) the
+   *                    minutia.
+   * @return the orientation of the minutia in radians.
+   */
+  private static double orientedAngle(double slope, int pixelsAbove, int pixelsBelow) {
+
+	  //Particular case of vertical minutia
+	  if (slope == Double.POSITIVE_INFINITY) {
+		  if (pixelsBelow <= pixelsAbove) {
+			  return Math.PI/2 ; }
+		  else {
+			  return -Math.PI/2 ; }
+	  }
+
+	  double angle = Math.atan(slope);
+
+	  //Particular case of horizontal minutia (angle 0 or pi)
+	  if (Double.compare(slope, 0.0) == 0) {
+		  if (pixelsAbove > pixelsBelow) {
+			  angle += Math.PI; }
+		  return angle;
+	  }
+
+	  //General Case
+	  if ((angle > 0 && pixelsBelow > pixelsAbove)
+		||(angle < 0 && pixelsBelow < pixelsAbove)) {
+		  angle += Math.PI;
+	  }
+	  return angle;
+  }
+
   /**
    * Computes the orientation of the minutia that the coordinate <code>(row,
    * col)</code>.
    *
-   * @param image    array containing each pixel's boolean value.
+   * @param image    array containing each pixel's boolean value.
+   * @param row      the first coordinate of the pixel of interest.
+   * @param col      the second coordinate of the pixel of interest.
+   * @param distance the distance to be considered in each direction to compute
+   *                 the orientation.
+   * @return The orientation in degrees.
+   */
+  public static int computeOrientation(boolean[][] image, int row, int col, int distance) {
+	  
+	  //using above methods to get the connected pixels, the slope and the angle
+	  boolean[][] connectedPixels = connectedPixels(image, row, col, distance);
+	  double slope = computeSlope(connectedPixels, row, col);
+	  double angle = computeAngle(connectedPixels, row, col, slope);
+	  
+	  //converting the angle to degrees and rounding
+	  angle = Math.round(Math.toDegrees(angle));
+	  
+	  //making the angle positive if necessary
+	  if (angle < 0) {
+		  angle += 360;
+	  }
+	  //returning the angle as an int
+	  return (int) angle;
+  }
+
+  /**
+   * Computes the orientation of the minutia at the coordinate <code>(row,
+   * col)</code> of a packed image.
+   *
+   * @param image    the packed image.
+   * @param row      the first coordinate of the pixel of interest.
+   * @param col      the second coordinate of the pixel of interest.
+   * @param distance the distance to be considered in each direction to compute
+   *                 the orientation.
+   * @return The orientation in degrees.
+   */
+  public static int computeOrientation(BinaryImage image, int row, int col, int distance) {
+
+	  BinaryImage connectedPixels = connectedPixels(image, row, col, distance);
+	  double slope = computeSlope(connectedPixels, row, col);
+	  double angle = computeAngle(connectedPixels, row, col, slope);
+	  return toOrientation(angle);
+  }
+
+  /**
+   * Computes the orientation of the minutia at the coordinate <code>(row,
+   * col)</code> of a padded image.
+   *
+   * @param image    the padded image.
+   * @param row      the first coordinate of the pixel of interest.
+   * @param col      the second coordinate of the pixel of interest.
+   * @param distance the distance to be considered in each direction to compute
+   *                 the orientation.
+   * @return The orientation in degrees.
+   */
+  public static int computeOrientation(PaddedBinaryImage image, int row, int col, int distance) {
+	  return computeOrientation(image, row, col, distance, new ConnectedPixels(distance));
+  }
+
+  /**
+   * Computes the orientation of the minutia at the coordinate <code>(row,
+   * col)</code> of a padded image, reusing the caller's buffers.
+   *
+   * @param image    the padded image.
    * @param row      the first coordinate of the pixel of interest.
    * @param col      the second coordinate of the pixel of interest.
    * @param distance the distance to be considered in each direction to compute
    *                 the orientation.
+   * @param scratch  the buffers used to compute the connected pixels.
    * @return The orientation in degrees.
    */
-  public static int computeOrientation(boolean[][] image, int row, int col, int distance) {
-	  
-	  //using above methods to get the connected pixels, the slope and the angle
-	  boolean[][] connectedPixels = connectedPixels(image, row, col, distance);
-	  double slope = computeSlope(connectedPixels, row, col);
-	  double angle = computeAngle(connectedPixels, row, col, slope);
-	  
-	  //converting the angle to degrees and rounding
+  public static int computeOrientation(PaddedBinaryImage image, int row, int col, int distance,
+      ConnectedPixels scratch) {
+
+	  return computeOrientation(connectedPixels(image, row, col, distance, scratch));
+  }
+
+  /**
+   * Converts an angle in radians to an orientation in degrees, rounded and
+   * between <code>0</code> and <code>360</code>.
+   *
+   * @param angle the angle in radians.
+   * @return the orientation in degrees.
+   */
+  private static int toOrientation(double angle) {
 	  angle = Math.round(Math.toDegrees(angle));
-	  
-	  //making the angle positive if necessary
 	  if (angle < 0) {
 		  angle += 360;
 	  }
-	  //returning the angle as an int
 	  return (int) angle;
   }
 
@@ -572,29 +1831,166 @@ public class Fingerprint {
    * @see #thin(boolean[][])
    */
   public static List<int[]> extract(boolean[][] image) {
-	  
-	  //initialise List and other variables used in the loop
+
+	  //adapter over the packed implementation
+	  return extract(BinaryImage.fromArray(image));
+  }
+
+  /**
+   * Extracts the minutiae from a thinned image, optionally with their type.
+   *
+   * @param image    array containing each pixel's boolean value.
+   * @param withType <code>true</code> to add the type of each minutia as a
+   *                 fourth element, {@link #MINUTIA_ENDING} or
+   *                 {@link #MINUTIA_BIFURCATION}.
+   * @return The list of all minutiae, in the format described in
+   *         {@link #extract(boolean[][])} when <code>withType</code> is
+   *         <code>false</code>.
+   */
+  public static List<int[]> extract(boolean[][] image, boolean withType) {
+	  return extract(BinaryImage.fromArray(image), withType);
+  }
+
+  /**
+   * Extracts the minutiae from a thinned packed image.
+   *
+   * @param image the packed image.
+   * @return The list of all minutiae, in the format described in
+   *         {@link #extract(boolean[][])}.
+   * @see #thin(BinaryImage)
+   */
+  public static List<int[]> extract(BinaryImage image) {
+	  return extract(image, false);
+  }
+
+  /**
+   * Extracts the minutiae from a thinned packed image, optionally with their
+   * type.
+   *
+   * @param image    the packed image.
+   * @param withType <code>true</code> to add the type of each minutia as a
+   *                 fourth element, {@link #MINUTIA_ENDING} or
+   *                 {@link #MINUTIA_BIFURCATION}.
+   * @return The list of all minutiae, in the format described in
+   *         {@link #extract(boolean[][], boolean)}.
+   */
+  public static List<int[]> extract(BinaryImage image, boolean withType) {
+
+	  //neighbourhoods are read from a padded copy, without bounds checks
+	  PaddedBinaryImage padded = PaddedBinaryImage.from(image);
+
+	  //loop over every black pixel except those on the borders
+	  List<int[]> minutiae = new ArrayList<>();
+	  extract(image, padded, 1, image.height() - 1, withType, minutiae);
+	  return minutiae;
+  }
+
+  /**
+   * The number of rows scanned by one task in
+   * {@link #extractParallel(BinaryImage, Executor)}.
+   */
+  public static final int EXTRACTION_BAND_HEIGHT = 16;
+
+  /**
+   * Extracts the minutiae from a thinned packed image, scanning bands of rows
+   * and computing the orientations in parallel.
+   * <p>
+   * Each band of {@link #EXTRACTION_BAND_HEIGHT} rows is a task run by
+   * <code>executor</code>. The minutiae of the bands are concatenated in the
+   * order of the rows, so the result is the same list as
+   * {@link #extract(BinaryImage)}.
+   *
+   * @param image    the packed image.
+   * @param executor the executor running the bands, for instance a pool shared
+   *                 with the rest of the application.
+   * @return The list of all minutiae, in the format described in
+   *         {@link #extract(boolean[][])}.
+   */
+  public static List<int[]> extractParallel(BinaryImage image, Executor executor) {
+	  return extractParallel(image, executor, false);
+  }
+
+  /**
+   * Extracts the minutiae from a thinned packed image, optionally with their
+   * type, scanning bands of rows in parallel as
+   * {@link #extractParallel(BinaryImage, Executor)} does. The result is the
+   * same list as {@link #extract(BinaryImage, boolean)}.
+   *
+   * @param image    the packed image.
+   * @param executor the executor running the bands.
+   * @param withType <code>true</code> to add the type of each minutia as a
+   *                 fourth element, {@link #MINUTIA_ENDING} or
+   *                 {@link #MINUTIA_BIFURCATION}.
+   * @return The list of all minutiae, in the format described in
+   *         {@link #extract(boolean[][], boolean)}.
+   */
+  public static List<int[]> extractParallel(BinaryImage image, Executor executor, boolean withType) {
+	  assert (image != null && executor != null);
+
+	  PaddedBinaryImage padded = PaddedBinaryImage.from(image);
+
+	  //one task per band, the borders being excluded as in extract
+	  List<CompletableFuture<List<int[]>>> bands = new ArrayList<>();
+	  for (int from = 1; from < image.height() - 1; from += EXTRACTION_BAND_HEIGHT) {
+		  int fromRow = from;
+		  int toRow = Math.min(from + EXTRACTION_BAND_HEIGHT, image.height() - 1);
+		  bands.add(CompletableFuture.supplyAsync(() -> {
+			  List<int[]> minutiae = new ArrayList<>();
+			  extract(image, padded, fromRow, toRow, withType, minutiae);
+			  return minutiae;
+		  }, executor));
+	  }
+
+	  //merging the bands in row order
 	  List<int[]> minutiae = new ArrayList<>();
+	  for (CompletableFuture<List<int[]>> band : bands) {
+		  minutiae.addAll(band.join());
+	  }
+	  return minutiae;
+  }
+
+  /**
+   * Extracts the minutiae of the rows <code>fromRow</code>(included) to
+   * <code>toRow</code>(excluded) of a thinned packed image, in row-major order.
+   *
+   * @param image    the packed image.
+   * @param padded   a padded copy of <code>image</code>.
+   * @param fromRow  the first row to scan, at least <code>1</code>.
+   * @param toRow    the row after the last row to scan, at most
+   *                 <code>image.height() - 1</code>.
+   * @param withType <code>true</code> to add the type of each minutia.
+   * @param minutiae the list receiving the minutiae.
+   */
+  private static void extract(BinaryImage image, PaddedBinaryImage padded, int fromRow, int toRow,
+      boolean withType, List<int[]> minutiae) {
+
 	  int transitions;
 	  int orientation;
-	  
-	  //loop over every pixel except those on the borders
-	  for (int i = 1; i < image.length - 1; ++i) {
-		  for (int j = 1; j < image[i].length - 1; ++j) {
-			  
-			  //find number of transitions
-			  transitions = transitions(getNeighbours(image, i, j));
-			  
-			  //if the pixel is a minutia (1 or 3 transitions), add it's row, col and orientation in the list
-			  if (image[i][j] && (transitions==1 || transitions==3)) {
-				  
-				  orientation = computeOrientation(image, i, j, ORIENTATION_DISTANCE);
-				  minutiae.add(new int[]{i, j, orientation});
+	  long[] words = image.words();
+	  int wordsPerRow = image.wordsPerRow();
+	  ConnectedPixels scratch = new ConnectedPixels(ORIENTATION_DISTANCE);
+
+	  //loop over every black pixel except those on the left and right borders
+	  for (int i = fromRow; i < toRow; ++i) {
+		  for (int w = 0; w < wordsPerRow; ++w) {
+			  long word = words[i * wordsPerRow + w];
+			  while (word != 0) {
+				  int j = w * BinaryImage.WORD_SIZE + Long.numberOfTrailingZeros(word);
+				  word &= word - 1;
+				  if (j == 0 || j == image.width() - 1) {
+					  continue;
+				  }
+
+				  //if the pixel is a minutia (1 or 3 transitions), add it's row, col and orientation in the list
+				  transitions = transitions(padded.neighbourMask(i, j));
+				  if (transitions==1 || transitions==3) {
+					  orientation = computeOrientation(padded, i, j, ORIENTATION_DISTANCE, scratch);
+					  //the number of transitions is also the type of the minutia
+					  minutiae.add(withType ? new int[]{i, j, orientation, transitions} : new int[]{i, j, orientation});
+				  }
 			  }
 		  }
 	  }
-	  //return the list
-	  return minutiae;
   }
 
   /**
@@ -604,21 +2000,81 @@ public class Fingerprint {
    * @param centerRow the row of the center of rotation.
    * @param centerCol the col of the center of rotation.
    * @param rotation  the rotation in degrees.
-   * @return the minutia rotated around the given center.
+   * @return the minutia rotated around the given center, with the type of the
+   *         original minutia if it has one.
    */
   public static int[] applyRotation(int[] minutia, int centerRow, int centerCol, int rotation) {
 	  
 	  //calculate new values (using temporary variables for clarity)
 	  int x = minutia[1] - centerCol;
 	  int y = centerRow - minutia[0];
-	  double radianRotation= Math.toRadians(rotation);
-	  double newX = (x * Math.cos(radianRotation)) - (y * Math.sin(radianRotation));
-	  double newY = (x * Math.sin(radianRotation)) + (y * Math.cos(radianRotation));
+	  double cos = cos(rotation);
+	  double sin = sin(rotation);
+	  double newX = (x * cos) - (y * sin);
+	  double newY = (x * sin) + (y * cos);
 	  int newRow= (int) Math.round(centerRow - newY);
 	  int newCol= (int) Math.round(newX + centerCol);
 	  int newOrientation = (minutia[2] + rotation) % 360;
 	  
-	  return new int[] {newRow, newCol, newOrientation};
+	  //the type, if any, does not change
+	  return minutia.length > 3 ? new int[] {newRow, newCol, newOrientation, minutia[3]} : new int[] {newRow, newCol, newOrientation};
+  }
+
+  /**
+   * The largest rotation, in absolute value, whose cosine and sine are
+   * precomputed. Rotations between two minutiae angles, offset by
+   * {@link #MATCH_ANGLE_OFFSET}, are always within this range.
+   */
+  private static final int TRIGONOMETRY_RANGE = 720;
+
+  /**
+   * <code>Math.cos(Math.toRadians(rotation))</code> at index
+   * <code>rotation + TRIGONOMETRY_RANGE</code>.
+   */
+  private static final double[] COS = new double[2 * TRIGONOMETRY_RANGE + 1];
+
+  /**
+   * <code>Math.sin(Math.toRadians(rotation))</code> at index
+   * <code>rotation + TRIGONOMETRY_RANGE</code>.
+   */
+  private static final double[] SIN = new double[2 * TRIGONOMETRY_RANGE + 1];
+
+  static {
+	  //the tables are indexed by the rotation itself rather than modulo 360, as
+	  //Math.toRadians(rotation + 360) does not give exactly the same cosine and sine
+	  for (int rotation = -TRIGONOMETRY_RANGE; rotation <= TRIGONOMETRY_RANGE; ++rotation) {
+		  double radianRotation = Math.toRadians(rotation);
+		  COS[rotation + TRIGONOMETRY_RANGE] = Math.cos(radianRotation);
+		  SIN[rotation + TRIGONOMETRY_RANGE] = Math.sin(radianRotation);
+	  }
+  }
+
+  /**
+   * Computes the cosine of an integer number of degrees, from a table when
+   * possible. The result is exactly <code>Math.cos(Math.toRadians(rotation))</code>.
+   *
+   * @param rotation the angle in degrees.
+   * @return the cosine of the angle.
+   */
+  static double cos(int rotation) {
+	  if (rotation < -TRIGONOMETRY_RANGE || rotation > TRIGONOMETRY_RANGE) {
+		  return Math.cos(Math.toRadians(rotation));
+	  }
+	  return COS[rotation + TRIGONOMETRY_RANGE];
+  }
+
+  /**
+   * Computes the sine of an integer number of degrees, from a table when
+   * possible. The result is exactly <code>Math.sin(Math.toRadians(rotation))</code>.
+   *
+   * @param rotation the angle in degrees.
+   * @return the sine of the angle.
+   */
+  static double sin(int rotation) {
+	  if (rotation < -TRIGONOMETRY_RANGE || rotation > TRIGONOMETRY_RANGE) {
+		  return Math.sin(Math.toRadians(rotation));
+	  }
+	  return SIN[rotation + TRIGONOMETRY_RANGE];
   }
 
   /**
@@ -627,16 +2083,20 @@ public class Fingerprint {
    * @param minutia        the original minutia.
    * @param rowTranslation the translation along the rows.
    * @param colTranslation the translation along the columns.
-   * @return the translated minutia.
+   * @return the translated minutia, with the type of the original minutia if
+   *         it has one.
    */
   public static int[] applyTranslation(int[] minutia, int rowTranslation, int colTranslation) {
 	  
 	  //initialise new minutia and calculate values
-	  int[] newMinutia = new int[3];
+	  int[] newMinutia = new int[minutia.length > 3 ? 4 : 3];
 	  
 	  newMinutia[0] = minutia[0] - rowTranslation;
 	  newMinutia[1] = minutia[1] - colTranslation;
 	  newMinutia[2] = minutia[2];
+	  if (minutia.length > 3) {
+		  newMinutia[3] = minutia[3];
+	  }
 	  
 	  return newMinutia;
   } 
@@ -688,7 +2148,64 @@ public class Fingerprint {
 	  return transformedMinutiae;
   }
   /**
-   * Counts the number of overlapping minutiae.
+   * Computes the row, column, and angle after applying a transformation
+   * (translation and rotation) for each minutia in the given set.
+   *
+   * @param minutiae       the set of minutiae.
+   * @param centerRow      the row around which the point is rotated.
+   * @param centerCol      the column around which the point is rotated.
+   * @param rowTranslation the vertical translation.
+   * @param colTranslation the horizontal translation.
+   * @param rotation       the rotation.
+   * @return the set of transformed minutiae.
+   */
+  public static MinutiaeSet applyTransformation(MinutiaeSet minutiae, int centerRow, int centerCol, int rowTranslation, int colTranslation, int rotation) {
+	  MinutiaeSet transformedMinutiae = new MinutiaeSet(minutiae.size());
+	  applyTransformation(minutiae, centerRow, centerCol, rowTranslation, colTranslation, rotation, transformedMinutiae);
+	  return transformedMinutiae;
+  }
+
+  /**
+   * Computes the row, column, and angle after applying a transformation
+   * (translation and rotation) for each minutia in the given set, storing the
+   * results in an existing set. Each minutia is transformed exactly as
+   * {@link #applyTransformation(int[], int, int, int, int, int)} does.
+   *
+   * @param minutiae       the set of minutiae.
+   * @param centerRow      the row around which the point is rotated.
+   * @param centerCol      the column around which the point is rotated.
+   * @param rowTranslation the vertical translation.
+   * @param colTranslation the horizontal translation.
+   * @param rotation       the rotation.
+   * @param target         the set receiving the transformed minutiae, emptied
+   *                       first.
+   */
+  public static void applyTransformation(MinutiaeSet minutiae, int centerRow, int centerCol, int rowTranslation, int colTranslation, int rotation, MinutiaeSet target) {
+	  target.clear();
+
+	  //the cosine and sine are the same for every minutia
+	  double cos = cos(rotation);
+	  double sin = sin(rotation);
+
+	  for (int k = 0; k < minutiae.size(); ++k) {
+		  //rotation, as in applyRotation
+		  int x = minutiae.col(k) - centerCol;
+		  int y = centerRow - minutiae.row(k);
+		  double newX = (x * cos) - (y * sin);
+		  double newY = (x * sin) + (y * cos);
+		  int newRow = (int) Math.round(centerRow - newY);
+		  int newCol = (int) Math.round(newX + centerCol);
+		  int newOrientation = (minutiae.angle(k) + rotation) % 360;
+
+		  //translation, as in applyTranslation
+		  target.add(newRow - rowTranslation, newCol - colTranslation, newOrientation, minutiae.type(k));
+	  }
+  }
+
+  /**
+   * Counts the number of overlapping minutiae. When both minutiae have a type,
+   * as a fourth element, they only overlap if their types are
+   * {@link MinutiaeSet#compatible(int, int) compatible}.
    *
    * @param minutiae1      the first set of minutiae.
    * @param minutiae2      the second set of minutiae.
@@ -714,7 +2231,8 @@ public class Fingerprint {
 			  double distanceEuclidienne = Math.sqrt(Math.pow(m1[0] - m2[0] , 2) + Math.pow(m1[1] - m2[1], 2));
 			  int diffOrientation = Math.abs(m1[2] - m2[2]);
 
-			  if (distanceEuclidienne <= maxDistance && diffOrientation <= maxOrientation) {
+			  if (distanceEuclidienne <= maxDistance && diffOrientation <= maxOrientation
+					  && (m1.length < 4 || m2.length < 4 || MinutiaeSet.compatible(m1[3], m2[3]))) {
 				  
 				  //Test Code
 				  //pairs.add(new int[][] {m1, m2});
@@ -746,6 +2264,71 @@ public class Fingerprint {
 	return minutiaeCount;
   }
   
+  /**
+   * Counts the number of overlapping minutiae of two sets, with the same rules
+   * as {@link #matchingMinutiaeCount(List, List, int, int)}. Two minutiae whose
+   * types are not {@link MinutiaeSet#compatible(int, int) compatible} never
+   * overlap.
+   *
+   * @param minutiae1      the first set of minutiae.
+   * @param minutiae2      the second set of minutiae.
+   * @param maxDistance    the maximum distance between two minutiae to consider
+   *                       them as overlapping.
+   * @param maxOrientation the maximum difference of orientation between two
+   *                       minutiae to consider them as overlapping.
+   * @return the number of overlapping minutiae.
+   */
+  public static int matchingMinutiaeCount(MinutiaeSet minutiae1, MinutiaeSet minutiae2, int maxDistance, int maxOrientation) {
+
+	  //initialise number of matching minutiae
+	  int minutiaeCount = 0;
+
+	  //iterate over all minutia from minutiae1 and minutiae2
+	  for (int k1 = 0; k1 < minutiae1.size(); ++k1) {
+		  for (int k2 = 0; k2 < minutiae2.size(); ++k2) {
+
+			  //calculate Euclidian distance and difference in orientation
+			  double distanceEuclidienne = Math.sqrt(Math.pow(minutiae1.row(k1) - minutiae2.row(k2), 2) + Math.pow(minutiae1.col(k1) - minutiae2.col(k2), 2));
+			  int diffOrientation = Math.abs(minutiae1.angle(k1) - minutiae2.angle(k2));
+
+			  if (distanceEuclidienne <= maxDistance && diffOrientation <= maxOrientation
+					  && MinutiaeSet.compatible(minutiae1.type(k1), minutiae2.type(k2))) {
+				  //we do not want to match one minutiae m1 to several minutiae m2 (the opposite is fine)
+				  ++minutiaeCount;
+				  break;
+			  }
+		  }
+	  }
+	  return minutiaeCount;
+  }
+
+  /**
+   * Counts the number of overlapping minutiae of two sets, the second one being
+   * indexed so that each minutia of the first set is only compared with the
+   * minutiae of the neighbouring cells. The count is the same as
+   * {@link #matchingMinutiaeCount(List, List, int, int)}: each minutia of the
+   * first set counts once if it overlaps at least one minutia of the second
+   * with a compatible type.
+   *
+   * @param minutiae1      the first set of minutiae.
+   * @param minutiae2      the index of the second set of minutiae, with cells at
+   *                       least as large as <code>maxDistance</code>.
+   * @param maxDistance    the maximum distance between two minutiae to consider
+   *                       them as overlapping.
+   * @param maxOrientation the maximum difference of orientation between two
+   *                       minutiae to consider them as overlapping.
+   * @return the number of overlapping minutiae.
+   */
+  public static int matchingMinutiaeCount(MinutiaeSet minutiae1, MinutiaeGrid minutiae2, int maxDistance, int maxOrientation) {
+	  int minutiaeCount = 0;
+	  for (int k1 = 0; k1 < minutiae1.size(); ++k1) {
+		  if (minutiae2.containsMatch(minutiae1.row(k1), minutiae1.col(k1), minutiae1.angle(k1), minutiae1.type(k1), maxDistance, maxOrientation)) {
+			  ++minutiaeCount;
+		  }
+	  }
+	  return minutiaeCount;
+  }
+
   //Test Code
   //public static int maxMatchingMinutiae = 19;
 
@@ -758,50 +2341,195 @@ public class Fingerprint {
    *         otherwise.
    */
   public static boolean match(List<int[]> minutiae1, List<int[]> minutiae2) {
-	  
-	  //Test Code
-	  //int maxMatchings =0;
+
+	  //adapter over the allocation free matching engine
+	  return match(MinutiaeSet.fromList(minutiae1), MinutiaeSet.fromList(minutiae2));
+  }
+
+  /**
+   * Compares the minutiae from two fingerprint by transforming the whole second
+   * list for every alignment, as {@link #match(List, List)} did before the
+   * {@link MatchingEngine}. It is kept as the reference the engine is checked
+   * against. As with the engine, minutiae with types are only used as anchors
+   * and counted with minutiae of compatible types.
+   *
+   * @param minutiae1 the list of minutiae of the first fingerprint.
+   * @param minutiae2 the list of minutiae of the second fingerprint.
+   * @return Returns <code>true</code> if they match and <code>false</code>
+   *         otherwise.
+   */
+  static boolean matchReference(List<int[]> minutiae1, List<int[]> minutiae2) {
 
 	  //iterate over all minutia from minutiae1 and minutiae2
 	  for (int [] m1 : minutiae1) {
 		  for (int [] m2 : minutiae2) {
-			  
+			  if (m1.length > 3 && m2.length > 3 && !MinutiaeSet.compatible(m1[3], m2[3])) {
+				  continue;
+			  }
+
 			  //calculate parameters for applyTransformation
 			  int rowTranslation = m2[0] - m1[0];
 			  int colTranslation = m2[1] - m1[1];
 			  int rotation = m2[2] - m1[2];
-			  
+
 			  //try to find matching minutiae for rotation + or - MATCH_ANGLE_OFFSET
 			  for (int k = rotation - MATCH_ANGLE_OFFSET; k <= rotation + MATCH_ANGLE_OFFSET ; ++k) {
-
 				  List<int[]> newMinutiae2 = applyTransformation(minutiae2,m1[0],m1[1],rowTranslation,colTranslation, k);
-				  
 				  int matchingMinutiaeCount = matchingMinutiaeCount(minutiae1, newMinutiae2, DISTANCE_THRESHOLD, ORIENTATION_THRESHOLD);
-				    
 				  if (matchingMinutiaeCount >= FOUND_THRESHOLD) {
-					  
-					  /*Test Code to print data about the Matching 
-					  System.out.println("\nMatching: " + matchingMinutiaeCount);
-					  System.out.println("Rotation found = " + k + "  Original rotation = " + rotation);
-					  System.out.println("Minutia1: [" + m1[0] + ", " + m1[1]+ ", " + m1[2]+ "]");
-					  System.out.println("Minutia2: [" + m2[0] + ", " + m2[1]+ ", " + m2[2]+ "]");
-					  System.out.println("Translation: " + rowTranslation + ", " + colTranslation);
-					  */
-					  
 					  return true;
 				  }
-				  
-				  /*Test Code to count the max number of matching
-				  if (matchingMinutiaeCount > maxMatchings) {
-					  maxMatchings = matchingMinutiaeCount;
-				  }*/
 			  }
 		  }
 	  }
-	  /*Test Code to print data about the Matching (when fingerprint are not the same)
-	  System.out.println("\nMatching: " + maxMatchings + "  ");
-	  */
-	  
 	  return false;
   }
+
+  /**
+   * Compares the minutiae from two fingerprint, with the same rules as
+   * {@link #match(List, List)}.
+   *
+   * @param minutiae1 the set of minutiae of the first fingerprint.
+   * @param minutiae2 the set of minutiae of the second fingerprint.
+   * @return Returns <code>true</code> if they match and <code>false</code>
+   *         otherwise.
+   * @see MatchingEngine
+   */
+  public static boolean match(MinutiaeSet minutiae1, MinutiaeSet minutiae2) {
+	  return new MatchingEngine().match(minutiae1, minutiae2);
+  }
+
+  /**
+   * Compares the minutiae from two fingerprint, searching their alignment with
+   * the given strategy.
+   *
+   * @param minutiae1 the set of minutiae of the first fingerprint.
+   * @param minutiae2 the set of minutiae of the second fingerprint.
+   * @param strategy  the way of searching the alignment.
+   * @return Returns <code>true</code> if they match and <code>false</code>
+   *         otherwise.
+   * @see MatchingEngine#match(MinutiaeSet, MinutiaeSet, MatchStrategy)
+   */
+  public static boolean match(MinutiaeSet minutiae1, MinutiaeSet minutiae2, MatchStrategy strategy) {
+	  return new MatchingEngine().match(minutiae1, minutiae2, strategy);
+  }
+
+  /**
+   * Compares two templates, pre-screening the anchors of the alignments with
+   * the descriptors of their minutiae.
+   *
+   * @param template1 the template of the first fingerprint.
+   * @param template2 the template of the second fingerprint.
+   * @param strategy  the way of searching the alignment.
+   * @return Returns <code>true</code> if they match and <code>false</code>
+   *         otherwise.
+   * @see MatchingEngine#match(FingerprintTemplate, FingerprintTemplate, MatchStrategy)
+   */
+  public static boolean match(FingerprintTemplate template1, FingerprintTemplate template2, MatchStrategy strategy) {
+	  return new MatchingEngine().match(template1, template2, strategy);
+  }
+
+  /**
+   * The default minimum number of minutiae of the first fingerprint handled by
+   * one task in {@link #matchParallel(MinutiaeSet, MinutiaeSet)}.
+   */
+  public static final int MATCHING_BLOCK_SIZE = 2;
+
+  /**
+   * Compares the minutiae from two fingerprint using the common fork/join pool.
+   *
+   * @param minutiae1 the set of minutiae of the first fingerprint.
+   * @param minutiae2 the set of minutiae of the second fingerprint.
+   * @return Returns <code>true</code> if they match and <code>false</code>
+   *         otherwise.
+   * @see #matchParallel(MinutiaeSet, MinutiaeSet, ForkJoinPool, int)
+   */
+  public static boolean matchParallel(MinutiaeSet minutiae1, MinutiaeSet minutiae2) {
+	  return matchParallel(minutiae1, minutiae2, ForkJoinPool.commonPool(), MATCHING_BLOCK_SIZE);
+  }
+
+  /**
+   * Compares the minutiae from two fingerprint, splitting the reference
+   * minutiae of the first fingerprint into blocks tried in parallel.
+   * <p>
+   * Each block tries, for each of its minutiae, every minutia of the second
+   * fingerprint as in {@link #match(MinutiaeSet, MinutiaeSet)}, with its own
+   * {@link MatchingEngine}. The blocks share a flag raised by the first one
+   * that finds a matching alignment: the other blocks check it before each
+   * alignment and stop. The result is the same as
+   * {@link #match(MinutiaeSet, MinutiaeSet)}.
+   *
+   * @param minutiae1 the set of minutiae of the first fingerprint.
+   * @param minutiae2 the set of minutiae of the second fingerprint.
+   * @param pool      the pool running the blocks.
+   * @param blockSize the minimum number of minutiae of the first fingerprint
+   *                  handled by one block, at least <code>1</code>.
+   * @return Returns <code>true</code> if they match and <code>false</code>
+   *         otherwise.
+   */
+  public static boolean matchParallel(MinutiaeSet minutiae1, MinutiaeSet minutiae2, ForkJoinPool pool, int blockSize) {
+	  assert (minutiae1 != null && minutiae2 != null && pool != null);
+	  assert (blockSize >= 1);
+
+	  //each minutia of the first set counts at most once
+	  if (minutiae1.size() < FOUND_THRESHOLD) {
+		  return false;
+	  }
+	  return pool.invoke(new AlignmentSearch(minutiae1, minutiae2, new AtomicBoolean(), 0, minutiae1.size(), blockSize));
+  }
+
+  /**
+   * Task trying the alignments on a block of reference minutiae of the first
+   * fingerprint, split in two halves while it is larger than twice the minimum
+   * block size.
+   */
+  @SuppressWarnings("serial")
+  private static final class AlignmentSearch extends RecursiveTask<Boolean> {
+
+	  private final MinutiaeSet minutiae1;
+	  private final MinutiaeSet minutiae2;
+	  private final AtomicBoolean found;
+	  private final int from;
+	  private final int to;
+	  private final int blockSize;
+
+	  AlignmentSearch(MinutiaeSet minutiae1, MinutiaeSet minutiae2, AtomicBoolean found, int from, int to, int blockSize) {
+		  this.minutiae1 = minutiae1;
+		  this.minutiae2 = minutiae2;
+		  this.found = found;
+		  this.from = from;
+		  this.to = to;
+		  this.blockSize = blockSize;
+	  }
+
+	  @Override
+	  protected Boolean compute() {
+		  if (found.get()) {
+			  return false;
+		  }
+		  if (to - from < 2 * blockSize) {
+			  MatchingEngine engine = new MatchingEngine();
+			  for (int k1 = from; k1 < to; ++k1) {
+				  for (int k2 = 0; k2 < minutiae2.size(); ++k2) {
+					  //another block may already have found a matching alignment
+					  if (found.get()) {
+						  return false;
+					  }
+					  if (MinutiaeSet.compatible(minutiae1.type(k1), minutiae2.type(k2))
+							  && engine.matchesAligned(minutiae1, minutiae2, k1, k2)) {
+						  found.set(true);
+						  return true;
+					  }
+				  }
+			  }
+			  return false;
+		  }
+		  int middle = (from + to) >>> 1;
+		  AlignmentSearch first = new AlignmentSearch(minutiae1, minutiae2, found, from, middle, blockSize);
+		  AlignmentSearch second = new AlignmentSearch(minutiae1, minutiae2, found, middle, to, blockSize);
+		  first.fork();
+		  boolean matched = second.compute();
+		  return first.join() | matched;
+	  }
+  }
 }
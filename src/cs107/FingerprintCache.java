@@ -0,0 +1,427 @@
+package cs107;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Cache of the results of the pipeline for fingerprint images, keyed by the
+ * SHA-256 hash of the content of the image files.
+ * <p>
+ * The binary images, the skeletons and the templates are kept in three
+ * separate {@link Tier tiers}, each holding at most a given number of entries
+ * and evicting the least recently used one. A skeleton is computed from the
+ * cached binary image and a template from the cached skeleton, so that each
+ * step runs at most once per image while it stays in the cache. Two images
+ * with the same content share their entries, whatever their paths.
+ * <p>
+ * With a spill directory, every entry computed is also written to a file
+ * named after its hash, and an entry missing from memory is read from that
+ * file before being computed again, so that the directory can be shared by
+ * several processes and runs. A spill file that cannot be read, for instance
+ * truncated by a crash, is deleted and its entry computed again, and an entry
+ * that cannot be spilled is only kept in memory. The cached images and templates must not be
+ * modified. The cache can be used by several threads at the same time, a
+ * missing entry being possibly computed by more than one of them.
+ */
+public final class FingerprintCache {
+
+  private final Tier<BinaryImage> binaries;
+  private final Tier<BinaryImage> skeletons;
+  private final Tier<FingerprintTemplate> templates;
+  private final Path spillDirectory;
+
+  /**
+   * Creates a cache kept in memory only.
+   *
+   * @param binaryCapacity   the maximum number of binary images.
+   * @param skeletonCapacity the maximum number of skeletons.
+   * @param templateCapacity the maximum number of templates.
+   */
+  public FingerprintCache(final int binaryCapacity, final int skeletonCapacity, final int templateCapacity) {
+    this(binaryCapacity, skeletonCapacity, templateCapacity, null);
+  }
+
+  /**
+   * Creates a cache.
+   *
+   * @param binaryCapacity   the maximum number of binary images.
+   * @param skeletonCapacity the maximum number of skeletons.
+   * @param templateCapacity the maximum number of templates.
+   * @param spillDirectory   the directory where the entries are also written,
+   *                         created if needed, or <code>null</code> to keep
+   *                         them in memory only.
+   */
+  public FingerprintCache(final int binaryCapacity, final int skeletonCapacity, final int templateCapacity,
+      final Path spillDirectory) {
+    this.binaries = new Tier<>(binaryCapacity);
+    this.skeletons = new Tier<>(skeletonCapacity);
+    this.templates = new Tier<>(templateCapacity);
+    this.spillDirectory = spillDirectory;
+  }
+
+  /**
+   * Computes the key of an image file.
+   *
+   * @param image the path of the image.
+   * @return the SHA-256 hash of the content of the file, in hexadecimal.
+   * @throws UncheckedIOException if the file cannot be read.
+   */
+  public static String key(final Path image) {
+    final byte[] content;
+    try {
+      content = Files.readAllBytes(image);
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    final byte[] hash;
+    try {
+      hash = MessageDigest.getInstance("SHA-256").digest(content);
+    } catch (final NoSuchAlgorithmException e) {
+      //every Java platform provides SHA-256
+      throw new IllegalStateException(e);
+    }
+    final StringBuilder key = new StringBuilder(2 * hash.length);
+    for (final byte b : hash) {
+      key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return key.toString();
+  }
+
+  /**
+   * Returns the binary image of an image file.
+   *
+   * @param image the path of the image.
+   * @return the binary image, or <code>null</code> if the image cannot be
+   *         decoded.
+   * @see Helper#readBinaryImage(String)
+   */
+  public BinaryImage binary(final Path image) {
+    return binary(key(image), image);
+  }
+
+  /**
+   * Returns the skeleton of an image file.
+   *
+   * @param image the path of the image.
+   * @return the skeleton, or <code>null</code> if the image cannot be decoded.
+   * @see Fingerprint#thinBitSliced(BinaryImage)
+   */
+  public BinaryImage skeleton(final Path image) {
+    return skeleton(key(image), image);
+  }
+
+  /**
+   * Returns the template of an image file.
+   *
+   * @param image the path of the image.
+   * @return the template, or <code>null</code> if the image cannot be decoded.
+   * @see FingerprintTemplate#extract(BinaryImage)
+   */
+  public FingerprintTemplate template(final Path image) {
+    final String key = key(image);
+    return templates.get(key, spill(key, ".fpt"), FingerprintCache::readTemplate, FingerprintCache::writeTemplate,
+        k -> {
+          final BinaryImage skeleton = skeleton(k, image);
+          return skeleton == null ? null : FingerprintTemplate.extract(skeleton);
+        });
+  }
+
+  /**
+   * @return the tier of the binary images.
+   */
+  public Tier<BinaryImage> binaries() {
+    return binaries;
+  }
+
+  /**
+   * @return the tier of the skeletons.
+   */
+  public Tier<BinaryImage> skeletons() {
+    return skeletons;
+  }
+
+  /**
+   * @return the tier of the templates.
+   */
+  public Tier<FingerprintTemplate> templates() {
+    return templates;
+  }
+
+  /**
+   * @param key   the key of the image.
+   * @param image the path of the image.
+   * @return the binary image, or <code>null</code> if the image cannot be
+   *         decoded.
+   */
+  private BinaryImage binary(final String key, final Path image) {
+    return binaries.get(key, spill(key, ".bin"), FingerprintCache::readImage, FingerprintCache::writeImage,
+        k -> Helper.readBinaryImage(image.toString()));
+  }
+
+  /**
+   * @param key   the key of the image.
+   * @param image the path of the image.
+   * @return the skeleton, or <code>null</code> if the image cannot be decoded.
+   */
+  private BinaryImage skeleton(final String key, final Path image) {
+    return skeletons.get(key, spill(key, ".skl"), FingerprintCache::readImage, FingerprintCache::writeImage, k -> {
+      final BinaryImage binary = binary(k, image);
+      return binary == null ? null : Fingerprint.thinBitSliced(binary);
+    });
+  }
+
+  /**
+   * @param key       the key of an entry.
+   * @param extension the extension of the files of the tier.
+   * @return the file of the entry, or <code>null</code> without spill
+   *         directory.
+   */
+  private Path spill(final String key, final String extension) {
+    return spillDirectory == null ? null : spillDirectory.resolve(key + extension);
+  }
+
+  /**
+   * Reads a packed image written by {@link #writeImage(BinaryImage, OutputStream)}.
+   *
+   * @param input  the stream.
+   * @param length the length of the stream in bytes.
+   * @return the packed image.
+   * @throws IOException if the stream cannot be read or its header does not
+   *                     match its length.
+   */
+  private static BinaryImage readImage(final InputStream input, final long length) throws IOException {
+    final DataInputStream data = new DataInputStream(input);
+    final int height = data.readInt();
+    final int width = data.readInt();
+    //the header is checked before allocating, so that a corrupted file cannot exhaust the heap
+    final long wordsPerRow = (width + (long) BinaryImage.WORD_SIZE - 1) / BinaryImage.WORD_SIZE;
+    if (height < 0 || width < 0 || height * wordsPerRow > Integer.MAX_VALUE
+        || 8 + 8L * height * wordsPerRow != length) {
+      throw new IOException("Corrupted image file");
+    }
+    final BinaryImage image = new BinaryImage(height, width);
+    final long[] words = image.words();
+    for (int i = 0; i < words.length; ++i) {
+      words[i] = data.readLong();
+    }
+    return image;
+  }
+
+  /**
+   * Writes a packed image as its height, its width and its words.
+   *
+   * @param image  the packed image.
+   * @param output the stream.
+   * @throws IOException if the stream cannot be written.
+   */
+  private static void writeImage(final BinaryImage image, final OutputStream output) throws IOException {
+    final DataOutputStream data = new DataOutputStream(output);
+    data.writeInt(image.height());
+    data.writeInt(image.width());
+    for (final long word : image.words()) {
+      data.writeLong(word);
+    }
+    data.flush();
+  }
+
+  /**
+   * Reads a template written by {@link #writeTemplate(FingerprintTemplate, OutputStream)}.
+   *
+   * @param input  the stream.
+   * @param length the length of the stream in bytes, unused as the record
+   *               read is bounded by the bytes of the stream.
+   * @return the template.
+   * @throws IOException if the stream cannot be read or is corrupted.
+   */
+  private static FingerprintTemplate readTemplate(final InputStream input, final long length)
+      throws IOException {
+    final FingerprintTemplate template = new TemplateReader(input).read();
+    if (template == null) {
+      throw new IOException("Empty template file");
+    }
+    return template;
+  }
+
+  /**
+   * Writes a template as a stream of one template.
+   *
+   * @param template the template.
+   * @param output   the stream.
+   * @throws IOException if the stream cannot be written.
+   */
+  private static void writeTemplate(final FingerprintTemplate template, final OutputStream output)
+      throws IOException {
+    final TemplateWriter writer = new TemplateWriter(output);
+    writer.write(template);
+    writer.flush();
+  }
+
+  /**
+   * Reads an entry from a stream.
+   */
+  private interface Reader<V> {
+    V read(InputStream input, long length) throws IOException;
+  }
+
+  /**
+   * Writes an entry to a stream.
+   */
+  private interface Writer<V> {
+    void write(V value, OutputStream output) throws IOException;
+  }
+
+  /**
+   * One level of the cache, holding the most recently used entries of one
+   * kind and counting how they were found.
+   *
+   * @param <V> the type of the entries.
+   */
+  public static final class Tier<V> {
+
+    private final int capacity;
+    private final Map<String, V> entries;
+    private long hits;
+    private long diskHits;
+    private long misses;
+
+    Tier(final int capacity) {
+      assert (capacity >= 0);
+      this.capacity = capacity;
+      this.entries = new LinkedHashMap<String, V>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, V> eldest) {
+          return size() > Tier.this.capacity;
+        }
+      };
+    }
+
+    /**
+     * Looks an entry up in memory, then in its spill file, and computes it if
+     * it is in neither.
+     */
+    V get(final String key, final Path file, final Reader<V> reader, final Writer<V> writer,
+        final Function<String, V> compute) {
+      synchronized (this) {
+        final V value = entries.get(key);
+        if (value != null) {
+          ++hits;
+          return value;
+        }
+      }
+
+      V value = null;
+      if (file != null) {
+        try (InputStream input = Files.newInputStream(file)) {
+          value = reader.read(input, Files.size(file));
+        } catch (final NoSuchFileException e) {
+          //not spilled yet
+        } catch (final IOException | RuntimeException e) {
+          //a corrupted file is a miss, and is replaced by the entry computed
+          value = null;
+          try {
+            Files.deleteIfExists(file);
+          } catch (final IOException ignored) {
+            //the file is replaced anyway once the entry is computed
+          }
+        }
+      }
+      final boolean fromDisk = value != null;
+      if (!fromDisk) {
+        value = compute.apply(key);
+        if (value != null && file != null) {
+          write(value, file, writer);
+        }
+      }
+
+      synchronized (this) {
+        if (fromDisk) {
+          ++diskHits;
+        } else {
+          ++misses;
+        }
+        if (value != null) {
+          entries.put(key, value);
+        }
+      }
+      return value;
+    }
+
+    /**
+     * Writes an entry to a temporary file renamed once complete, so that
+     * readers never see a partial file. An entry that cannot be written, for
+     * instance because the disk is full, is not spilled.
+     */
+    private static <V> void write(final V value, final Path file, final Writer<V> writer) {
+      try {
+        Files.createDirectories(file.getParent());
+        final Path temporary = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+          try (OutputStream output = Files.newOutputStream(temporary)) {
+            writer.write(value, output);
+          }
+          Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+          Files.deleteIfExists(temporary);
+        }
+      } catch (final IOException e) {
+        //the entry is still cached in memory
+      }
+    }
+
+    /**
+     * @return the maximum number of entries kept in memory.
+     */
+    public int capacity() {
+      return capacity;
+    }
+
+    /**
+     * @return the number of entries in memory.
+     */
+    public synchronized int size() {
+      return entries.size();
+    }
+
+    /**
+     * @return the number of entries found in memory.
+     */
+    public synchronized long hits() {
+      return hits;
+    }
+
+    /**
+     * @return the number of entries found in the spill directory.
+     */
+    public synchronized long diskHits() {
+      return diskHits;
+    }
+
+    /**
+     * @return the number of entries computed.
+     */
+    public synchronized long misses() {
+      return misses;
+    }
+
+    @Override
+    public synchronized String toString() {
+      return hits + " hit(s), " + diskHits + " disk hit(s), " + misses + " miss(es), " + entries.size() + "/"
+          + capacity + " entries";
+    }
+  }
+}
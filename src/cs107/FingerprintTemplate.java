@@ -0,0 +1,60 @@
+package cs107;
+
+/**
+ * What is kept of a fingerprint to compare it with others: its minutiae, with
+ * their types, and the descriptors of their neighbourhoods, computed once when
+ * the template is created.
+ */
+public final class FingerprintTemplate {
+
+  private final MinutiaeSet minutiae;
+  private final MinutiaDescriptors descriptors;
+
+  /**
+   * Creates a template from minutiae and their descriptors.
+   *
+   * @param minutiae    the minutiae of the fingerprint.
+   * @param descriptors the descriptors of <code>minutiae</code>, in the same
+   *                    order.
+   */
+  public FingerprintTemplate(final MinutiaeSet minutiae, final MinutiaDescriptors descriptors) {
+    assert (minutiae.size() == descriptors.size());
+    this.minutiae = minutiae;
+    this.descriptors = descriptors;
+  }
+
+  /**
+   * Creates the template of a set of minutiae, computing their descriptors.
+   *
+   * @param minutiae the minutiae of the fingerprint.
+   * @return the template.
+   */
+  public static FingerprintTemplate of(final MinutiaeSet minutiae) {
+    return new FingerprintTemplate(minutiae, MinutiaDescriptors.compute(minutiae));
+  }
+
+  /**
+   * Extracts the template of a thinned image.
+   *
+   * @param skeleton the packed thinned image.
+   * @return the template, with the types of the minutiae.
+   * @see Fingerprint#extract(BinaryImage, boolean)
+   */
+  public static FingerprintTemplate extract(final BinaryImage skeleton) {
+    return of(MinutiaeSet.fromList(Fingerprint.extract(skeleton, true)));
+  }
+
+  /**
+   * @return the minutiae of the fingerprint.
+   */
+  public MinutiaeSet minutiae() {
+    return minutiae;
+  }
+
+  /**
+   * @return the descriptors of the minutiae.
+   */
+  public MinutiaDescriptors descriptors() {
+    return descriptors;
+  }
+}
@@ -0,0 +1,259 @@
+package cs107;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Templates enrolled once, against which a probe is identified (1:N search).
+ * <p>
+ * {@link #identify(FingerprintTemplate, int, int, ForkJoinPool)} scores the
+ * probe against every enrolled template with
+ * {@link MatchingEngine#score(FingerprintTemplate, FingerprintTemplate, MatchStrategy, int)},
+ * splitting the gallery into blocks of {@link #BLOCK_SIZE} templates searched
+ * in parallel, and returns the enrolled templates that match, best first.
+ * Enrolling must not happen while identifying.
+ * <p>
+ * A gallery either keeps its templates in memory or is backed by a
+ * {@link GalleryFile}, the templates being then read in place from the
+ * mapping of the file when they are scored, and enrolled templates appended
+ * to the file.
+ */
+public final class Gallery {
+
+  /**
+   * The default number of candidates returned by
+   * {@link #identify(FingerprintTemplate)}.
+   */
+  public static final int DEFAULT_TOP_K = 10;
+
+  /**
+   * The minimum number of enrolled templates scored by one task.
+   */
+  public static final int BLOCK_SIZE = 8;
+
+  private final MatchStrategy strategy;
+  private final GalleryFile file;
+  private final List<String> ids = new ArrayList<>();
+  private final List<FingerprintTemplate> templates = new ArrayList<>();
+
+  /**
+   * Creates an empty gallery searched with {@link MatchStrategy#HOUGH}.
+   */
+  public Gallery() {
+    this(MatchStrategy.HOUGH);
+  }
+
+  /**
+   * Creates an empty gallery.
+   *
+   * @param strategy the way of searching the alignment of the probe with each
+   *                 enrolled template.
+   */
+  public Gallery(final MatchStrategy strategy) {
+    this.strategy = strategy;
+    this.file = null;
+  }
+
+  /**
+   * Creates a gallery backed by a file, the templates it already holds being
+   * enrolled.
+   *
+   * @param file     the gallery file, which must stay open while the gallery is
+   *                 used.
+   * @param strategy the way of searching the alignment of the probe with each
+   *                 enrolled template.
+   */
+  public Gallery(final GalleryFile file, final MatchStrategy strategy) {
+    assert (file != null);
+    this.strategy = strategy;
+    this.file = file;
+  }
+
+  /**
+   * Enrolls a template.
+   *
+   * @param id       the identifier returned when the template is a candidate.
+   * @param template the template.
+   * @throws UncheckedIOException if the template cannot be appended to the
+   *                              file backing the gallery.
+   */
+  public void enroll(final String id, final FingerprintTemplate template) {
+    assert (id != null && template != null);
+    if (file != null) {
+      try {
+        file.append(id, template);
+      } catch (final IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return;
+    }
+    ids.add(id);
+    templates.add(template);
+  }
+
+  /**
+   * @return the number of enrolled templates.
+   */
+  public int size() {
+    return file != null ? file.size() : templates.size();
+  }
+
+  /**
+   * @param index the index of the template, in the order of enrollment.
+   * @return the identifier of the template.
+   */
+  public String id(final int index) {
+    return file != null ? file.id(index) : ids.get(index);
+  }
+
+  /**
+   * @param index the index of the template, in the order of enrollment.
+   * @return the template.
+   */
+  public FingerprintTemplate template(final int index) {
+    return file != null ? file.template(index) : templates.get(index);
+  }
+
+  /**
+   * Identifies a probe using the common fork/join pool, returning at most
+   * {@link #DEFAULT_TOP_K} candidates and scoring every enrolled template
+   * completely.
+   *
+   * @param probe the template of the probe.
+   * @return the matching candidates, best first.
+   * @see #identify(FingerprintTemplate, int, int, ForkJoinPool)
+   */
+  public List<Candidate> identify(final FingerprintTemplate probe) {
+    return identify(probe, DEFAULT_TOP_K, Integer.MAX_VALUE, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Identifies a probe, scoring the enrolled templates in parallel.
+   * <p>
+   * As soon as one enrolled template reaches <code>confidentScore</code>, the
+   * search stops: the templates not scored yet are skipped, and the candidate
+   * found is returned along with those already found.
+   *
+   * @param probe          the template of the probe.
+   * @param topK           the maximum number of candidates returned.
+   * @param confidentScore the score from which a candidate is considered
+   *                       certain, <code>Integer.MAX_VALUE</code> to always
+   *                       score every enrolled template.
+   * @param pool           the pool running the search.
+   * @return the enrolled templates with a score of at least
+   *         {@link Fingerprint#FOUND_THRESHOLD}, by decreasing score and then
+   *         in the order of enrollment, at most <code>topK</code> of them.
+   */
+  public List<Candidate> identify(final FingerprintTemplate probe, final int topK, final int confidentScore,
+      final ForkJoinPool pool) {
+    assert (probe != null && pool != null);
+    assert (topK >= 0);
+
+    final int[] scores = new int[size()];
+    pool.invoke(new Search(probe, scores, confidentScore, new AtomicBoolean(), 0, scores.length));
+
+    final List<Candidate> candidates = new ArrayList<>();
+    for (int index = 0; index < scores.length; ++index) {
+      if (scores[index] > 0) {
+        candidates.add(new Candidate(index, id(index), scores[index]));
+      }
+    }
+    candidates.sort((candidate1, candidate2) -> candidate1.score != candidate2.score
+        ? Integer.compare(candidate2.score, candidate1.score)
+        : Integer.compare(candidate1.index, candidate2.index));
+    return candidates.size() > topK ? new ArrayList<>(candidates.subList(0, topK)) : candidates;
+  }
+
+  /**
+   * An enrolled template matching a probe.
+   */
+  public static final class Candidate {
+
+    private final int index;
+    private final String id;
+    private final int score;
+
+    Candidate(final int index, final String id, final int score) {
+      this.index = index;
+      this.id = id;
+      this.score = score;
+    }
+
+    /**
+     * @return the index of the template, in the order of enrollment.
+     */
+    public int index() {
+      return index;
+    }
+
+    /**
+     * @return the identifier of the template.
+     */
+    public String id() {
+      return id;
+    }
+
+    /**
+     * @return the number of overlapping minutiae of the best alignment found.
+     */
+    public int score() {
+      return score;
+    }
+
+    @Override
+    public String toString() {
+      return id + " (" + score + ")";
+    }
+  }
+
+  /**
+   * Task scoring a block of enrolled templates, split in two halves while it
+   * is larger than twice {@link #BLOCK_SIZE}.
+   */
+  @SuppressWarnings("serial")
+  private final class Search extends RecursiveAction {
+
+    private final FingerprintTemplate probe;
+    private final int[] scores;
+    private final int confidentScore;
+    private final AtomicBoolean confident;
+    private final int from;
+    private final int to;
+
+    Search(final FingerprintTemplate probe, final int[] scores, final int confidentScore,
+        final AtomicBoolean confident, final int from, final int to) {
+      this.probe = probe;
+      this.scores = scores;
+      this.confidentScore = confidentScore;
+      this.confident = confident;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from < 2 * BLOCK_SIZE) {
+        final MatchingEngine engine = new MatchingEngine();
+        for (int index = from; index < to; ++index) {
+          //another block may already have found a certain candidate
+          if (confident.get()) {
+            return;
+          }
+          scores[index] = engine.score(probe, template(index), strategy, confidentScore);
+          if (scores[index] >= confidentScore) {
+            confident.set(true);
+          }
+        }
+        return;
+      }
+      final int middle = (from + to) >>> 1;
+      invokeAll(new Search(probe, scores, confidentScore, confident, from, middle),
+          new Search(probe, scores, confidentScore, confident, middle, to));
+    }
+  }
+}
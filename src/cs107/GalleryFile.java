@@ -0,0 +1,384 @@
+package cs107;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A gallery of templates stored in a single file, read through a memory
+ * mapping.
+ * <p>
+ * The file starts with a header of {@link #HEADER_SIZE} bytes: the 3 bytes of
+ * {@link #MAGIC}, the byte {@link #VERSION}, the number of templates and the
+ * number of entries of an index block. The first index block follows. An
+ * index block is the offset of the next block, <code>0</code> for the last
+ * one, followed by the offsets of the records of its templates. A record is
+ * the length and the UTF-8 bytes of the identifier, padded with zeros to a
+ * multiple of 4 bytes, then the template as <code>int</code>s: the number of
+ * minutiae and of neighbours of a descriptor, the rows, columns, angles and
+ * types of the minutiae, the number of neighbours of each descriptor, and the
+ * distances, directions and orientations of the neighbours, with room for
+ * every neighbour of each descriptor.
+ * <p>
+ * Opening a file only reads the header and follows the chain of index blocks,
+ * so it does not depend on the number or the size of the templates. The
+ * fixed-width records are read in place: a template is a
+ * {@link MinutiaeSet} and {@link MinutiaDescriptors} wrapping its record in
+ * the mapping, so that the gallery stays in the page cache rather than in the
+ * heap, and a record is only checked when its template is requested.
+ * Appending writes the record and, when the last block is full, a new block
+ * at the end of the file, then fills the entry of the block and finally the
+ * number of templates, so that the existing index is never rewritten.
+ * <p>
+ * The mapping covers more than the file holds, its capacity doubling whenever
+ * an append needs more, so that enrolling many templates only maps the file a
+ * logarithmic number of times. The file is padded with zeros up to the
+ * capacity while it is open, and truncated to its content when it is closed.
+ * A file that was not closed keeps its padding, which is then skipped.
+ * <p>
+ * Templates can be read by several threads at the same time, but appending
+ * must not happen while reading. Files are limited to 2 GB, the size of one
+ * mapping.
+ */
+public final class GalleryFile implements Closeable {
+
+  /**
+   * The first bytes of a gallery file.
+   */
+  static final byte[] MAGIC = {'F', 'P', 'G'};
+
+  /**
+   * The version of the format written.
+   */
+  public static final int VERSION = 2;
+
+  /**
+   * The size of the header in bytes.
+   */
+  static final int HEADER_SIZE = 16;
+
+  /**
+   * The number of templates indexed by one block of a new file.
+   */
+  public static final int INDEX_BLOCK_ENTRIES = 1024;
+
+  private static final int COUNT_OFFSET = 4;
+  private static final int BLOCK_ENTRIES_OFFSET = 8;
+
+  private final FileChannel channel;
+  private final int blockEntries;
+  private long[] blocks;
+  private int blockCount;
+  private int size;
+  private int end;
+  private MappedByteBuffer mapping;
+
+  /**
+   * Opens a gallery file.
+   *
+   * @param channel the channel of the file, open for reading and writing.
+   * @throws IOException if the file is not a gallery file.
+   */
+  private GalleryFile(final FileChannel channel) throws IOException {
+    this.channel = channel;
+    if (channel.size() > Integer.MAX_VALUE) {
+      throw new IOException("Gallery file larger than 2 GB");
+    }
+    end = (int) channel.size();
+    map(end);
+    for (int i = 0; i < MAGIC.length; ++i) {
+      if (mapping.limit() < HEADER_SIZE || mapping.get(i) != MAGIC[i]) {
+        throw new IOException("Not a gallery file");
+      }
+    }
+    if (mapping.get(MAGIC.length) != VERSION) {
+      throw new IOException("Unsupported gallery version: " + mapping.get(MAGIC.length));
+    }
+    size = mapping.getInt(COUNT_OFFSET);
+    blockEntries = mapping.getInt(BLOCK_ENTRIES_OFFSET);
+    if (size < 0 || blockEntries <= 0) {
+      throw new IOException("Corrupted gallery file");
+    }
+
+    //one step per block of entries, whatever the size of the templates
+    blocks = new long[8];
+    for (long block = HEADER_SIZE; block != 0; block = mapping.getLong((int) block)) {
+      if (block < HEADER_SIZE || block + blockSize() > mapping.limit()) {
+        throw new IOException("Corrupted gallery file");
+      }
+      if (blockCount == blocks.length) {
+        blocks = Arrays.copyOf(blocks, 2 * blockCount);
+      }
+      blocks[blockCount++] = block;
+    }
+    if (size > (long) blockCount * blockEntries) {
+      throw new IOException("Corrupted gallery file");
+    }
+  }
+
+  /**
+   * Opens a gallery file, creating it with {@link #INDEX_BLOCK_ENTRIES} entries
+   * per index block if it does not exist.
+   *
+   * @param path the path of the file.
+   * @return the gallery file.
+   * @throws IOException if the file cannot be opened or is not a gallery file.
+   */
+  public static GalleryFile open(final Path path) throws IOException {
+    return open(path, INDEX_BLOCK_ENTRIES);
+  }
+
+  /**
+   * Opens a gallery file, creating it if it does not exist.
+   *
+   * @param path         the path of the file.
+   * @param blockEntries the number of entries per index block if the file is
+   *                     created, the existing files keeping theirs.
+   * @return the gallery file.
+   * @throws IOException if the file cannot be opened or is not a gallery file.
+   */
+  static GalleryFile open(final Path path, final int blockEntries) throws IOException {
+    assert (blockEntries > 0);
+    final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    try {
+      if (channel.size() == 0) {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + 8 + 8 * blockEntries);
+        header.put(MAGIC).put((byte) VERSION).putInt(0).putInt(blockEntries);
+        channel.write(header.clear(), 0);
+      }
+      return new GalleryFile(channel);
+    } catch (final IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * @return the number of templates.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @param index the index of the template, in the order of enrollment.
+   * @return the identifier of the template.
+   * @throws UncheckedIOException if the record of the template is corrupted.
+   */
+  public String id(final int index) {
+    final int offset = record(index);
+    final byte[] id = new byte[mapping.getInt(offset)];
+    mapping.duplicate().position(offset + 4).get(id);
+    return new String(id, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Reads a template in place, its minutiae and descriptors being views of
+   * its record in the mapping.
+   *
+   * @param index the index of the template, in the order of enrollment.
+   * @return the template, which must not be used once the file is closed.
+   * @throws UncheckedIOException if the record of the template is corrupted.
+   */
+  public FingerprintTemplate template(final int index) {
+    final int offset = record(index);
+    final long position = offset + 4 + padded(mapping.getInt(offset));
+    if (position > end - 8) {
+      throw corrupted();
+    }
+    final int minutiae = mapping.getInt((int) position);
+    final int neighbours = mapping.getInt((int) position + 4);
+    if (minutiae < 0 || neighbours < 0 || neighbours > MinutiaDescriptors.MAX_NEIGHBOURS
+        || position + 8 + templateLength(minutiae, neighbours) > end) {
+      throw corrupted();
+    }
+    //the counts bound the neighbours read, and are the only values the matcher trusts
+    final int counts = (int) position + 8 + 16 * minutiae;
+    for (int k = 0; k < minutiae; ++k) {
+      final int count = mapping.getInt(counts + 4 * k);
+      if (count < 0 || count > neighbours) {
+        throw corrupted();
+      }
+    }
+    return new FingerprintTemplate(MinutiaeSet.wrap(slice((int) position + 8, 16 * minutiae), minutiae),
+        MinutiaDescriptors.wrap(slice(counts, (int) templateLength(minutiae, neighbours) - 16 * minutiae),
+            neighbours, minutiae));
+  }
+
+  /**
+   * Appends a template at the end of the file.
+   *
+   * @param id       the identifier of the template.
+   * @param template the template, stored with its descriptors.
+   * @throws IOException if the file cannot be written or would exceed 2 GB.
+   */
+  public void append(final String id, final FingerprintTemplate template) throws IOException {
+    final byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+    final MinutiaeSet minutiae = template.minutiae();
+    final MinutiaDescriptors descriptors = template.descriptors();
+    final boolean newBlock = size == blockCount * blockEntries;
+    final long required = (long) end + (newBlock ? blockSize() : 0) + 4 + padded(idBytes.length) + 8
+        + templateLength(minutiae.size(), descriptors.neighbours());
+    if (required > Integer.MAX_VALUE) {
+      throw new IOException("Gallery file larger than 2 GB");
+    }
+    if (required > mapping.capacity()) {
+      map((int) Math.min(Math.max(required, 2L * mapping.capacity()), Integer.MAX_VALUE));
+    }
+
+    //a new block is linked from the last one once it is written
+    if (newBlock) {
+      for (int offset = end; offset < end + blockSize(); offset += 8) {
+        mapping.putLong(offset, 0);
+      }
+      mapping.putLong((int) blocks[blockCount - 1], end);
+      if (blockCount == blocks.length) {
+        blocks = Arrays.copyOf(blocks, 2 * blockCount);
+      }
+      blocks[blockCount++] = end;
+      end += blockSize();
+    }
+
+    final ByteBuffer record = mapping.duplicate().position(end);
+    record.putInt(idBytes.length).put(idBytes).put(new byte[padded(idBytes.length) - idBytes.length]);
+    record.putInt(minutiae.size()).putInt(descriptors.neighbours());
+    for (int k = 0; k < minutiae.size(); ++k) {
+      record.putInt(minutiae.row(k));
+    }
+    for (int k = 0; k < minutiae.size(); ++k) {
+      record.putInt(minutiae.col(k));
+    }
+    for (int k = 0; k < minutiae.size(); ++k) {
+      record.putInt(minutiae.angle(k));
+    }
+    for (int k = 0; k < minutiae.size(); ++k) {
+      record.putInt(minutiae.type(k));
+    }
+    for (int k = 0; k < descriptors.size(); ++k) {
+      record.putInt(descriptors.count(k));
+    }
+    //the neighbours past the count of a descriptor are left as zeros
+    final int neighbours = descriptors.neighbours();
+    final int start = record.position();
+    for (int k = 0; k < descriptors.size(); ++k) {
+      for (int j = 0; j < descriptors.count(k); ++j) {
+        final int slot = start + 4 * (k * neighbours + j);
+        mapping.putInt(slot, descriptors.distance(k, j));
+        mapping.putInt(slot + 4 * descriptors.size() * neighbours, descriptors.direction(k, j));
+        mapping.putInt(slot + 8 * descriptors.size() * neighbours, descriptors.orientation(k, j));
+      }
+    }
+    mapping.putLong((int) entry(size), end);
+    mapping.putInt(COUNT_OFFSET, size + 1);
+    end = (int) required;
+    ++size;
+  }
+
+  /**
+   * Closes the file, removing the padding past its content.
+   *
+   * @throws IOException if the file cannot be truncated or closed.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      if (channel.isOpen()) {
+        mapping.force();
+        channel.truncate(end);
+      }
+    } finally {
+      channel.close();
+    }
+  }
+
+  /**
+   * @return the size in bytes of an index block.
+   */
+  private int blockSize() {
+    return 8 + 8 * blockEntries;
+  }
+
+  /**
+   * @param index the index of a template.
+   * @return the position in the file of the entry of the template.
+   */
+  private long entry(final int index) {
+    return blocks[index / blockEntries] + 8 + 8L * (index % blockEntries);
+  }
+
+  /**
+   * @param index the index of a template.
+   * @return the position in the file of the record of the template.
+   */
+  private int record(final int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Template " + index + " of " + size);
+    }
+    final long offset = mapping.getLong((int) entry(index));
+    if (offset < HEADER_SIZE || offset > end - 4) {
+      throw corrupted();
+    }
+    final int idLength = mapping.getInt((int) offset);
+    if (idLength < 0 || offset + 4 + idLength > end) {
+      throw corrupted();
+    }
+    return (int) offset;
+  }
+
+  /**
+   * @param length a number of bytes.
+   * @return the number rounded up to a multiple of 4, so that the
+   *         <code>int</code>s following stay aligned.
+   */
+  private static int padded(final int length) {
+    return (length + 3) & ~3;
+  }
+
+  /**
+   * @param minutiae   the number of minutiae of a template.
+   * @param neighbours the number of neighbours of its descriptors.
+   * @return the size in bytes of the minutiae and descriptors of the template
+   *         in a record.
+   */
+  private static long templateLength(final int minutiae, final int neighbours) {
+    return 4L * minutiae * (5 + 3L * neighbours);
+  }
+
+  /**
+   * @param from   the position of the first byte.
+   * @param length the number of bytes.
+   * @return a view of the bytes of the mapping.
+   */
+  private ByteBuffer slice(final int from, final int length) {
+    return mapping.duplicate().position(from).limit(from + length).slice();
+  }
+
+  /**
+   * @return the exception thrown when a record is corrupted.
+   */
+  private static UncheckedIOException corrupted() {
+    return new UncheckedIOException(new IOException("Corrupted gallery record"));
+  }
+
+  /**
+   * Maps the start of the file, extending the file with zeros if it is
+   * shorter.
+   *
+   * @param capacity the number of bytes mapped.
+   * @throws IOException if the file cannot be extended or mapped.
+   */
+  private void map(final int capacity) throws IOException {
+    if (channel.size() < capacity) {
+      channel.write(ByteBuffer.allocate(1), capacity - 1);
+    }
+    mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+  }
+}
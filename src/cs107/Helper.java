@@ -4,8 +4,22 @@ import java.awt.Graphics;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 import javax.imageio.ImageIO;
 import javax.swing.JFrame;
@@ -43,6 +57,21 @@ public final class Helper {
    */
   private final static double LUMA_COEFFICIENT_BLUE = 0.114;
 
+  /**
+   * The luma coefficients of Rec. 601 multiplied by 1000, so that the luminance
+   * of a pixel can be compared with the threshold of {@link #toBinary(int[][])}
+   * using integers only.
+   */
+  private final static int LUMA_RED = 299;
+  private final static int LUMA_GREEN = 587;
+  private final static int LUMA_BLUE = 114;
+
+  /**
+   * The threshold <code>127.5</code> of the rounded luminance, multiplied by
+   * 1000 as the integer luma coefficients.
+   */
+  private final static int LUMA_THRESHOLD = 127500;
+
   /**
    * Reads specified image from the resource folder as ARGB.
    *
@@ -52,14 +81,8 @@ public final class Helper {
    * @see #write
    */
   public static int[][] readARGB(final String name) {
-    try {
-      // final BufferedImage image = ImageIO.read(Helper.class.getResource(name));
-      final BufferedImage image = ImageIO.read(new File(name));
-      return fromBufferedImage(image);
-    } catch (final IOException e) {
-      System.out.println(e + " Filename: " + name);
-      return null;
-    }
+    final BufferedImage image = readImage(name);
+    return image == null ? null : fromBufferedImage(image);
   }
 
   /**
@@ -71,8 +94,177 @@ public final class Helper {
    * @see #write
    */
   public static boolean[][] readBinary(final String name) {
-    final int[][] image = readARGB(name);
-    return image == null ? null : toBinary(image);
+    final BinaryImage image = readBinaryImage(name);
+    return image == null ? null : image.toArray();
+  }
+
+  /**
+   * Reads specified image from the resource folder as a packed binary image,
+   * without converting it to ARGB first.
+   *
+   * @param name Name of the image to read, or path relative to the resource
+   *             folder.
+   * @return the packed binary image, or <code>null</code> on failure
+   * @see #toBinaryImage(BufferedImage)
+   * @see #writeBinary(String, BinaryImage)
+   */
+  public static BinaryImage readBinaryImage(final String name) {
+    if (isNetpbm(name)) {
+      return readNetpbm(name);
+    }
+    final BufferedImage image = readImage(name);
+    return image == null ? null : toBinaryImage(image);
+  }
+
+  /**
+   * Reads a netpbm image, either a packed bitmap (P4) or a grey image (P5),
+   * through a memory-mapped file and without ImageIO.
+   * <p>
+   * The rows of a bitmap are copied to the packed binary image 64 pixels at a
+   * time. A grey pixel is black if its value is below half the maximum value
+   * of the image.
+   *
+   * @param name path of the image, usually ending in <code>.pbm</code> or
+   *             <code>.pgm</code>.
+   * @return the packed binary image, or <code>null</code> on failure
+   * @see #writeBinary(String, BinaryImage)
+   */
+  public static BinaryImage readNetpbm(final String name) {
+    try (FileChannel channel = FileChannel.open(Paths.get(name), StandardOpenOption.READ)) {
+      return readNetpbm(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    } catch (final IOException | IllegalArgumentException e) {
+      //a file larger than 2 GB cannot be mapped
+      System.out.println(e + " Filename: " + name);
+      return null;
+    }
+  }
+
+  /**
+   * Decodes a netpbm image.
+   *
+   * @param buffer the content of the file, in big-endian order.
+   * @return the packed binary image.
+   * @throws IOException if the content is not a P4 or P5 image.
+   */
+  private static BinaryImage readNetpbm(final ByteBuffer buffer) throws IOException {
+    if (buffer.remaining() < 2 || buffer.get() != 'P') {
+      throw new IOException("Not a netpbm image");
+    }
+    final int format = buffer.get();
+    if (format != '4' && format != '5') {
+      throw new IOException("Unsupported netpbm format P" + (char) format);
+    }
+    final int width = readNetpbmValue(buffer);
+    final int height = readNetpbmValue(buffer);
+    final int maxValue = format == '5' ? readNetpbmValue(buffer) : 1;
+    if (width == 0 || height == 0 || maxValue == 0 || maxValue > 0xFFFF) {
+      throw new IOException("Malformed netpbm header");
+    }
+
+    final int bytesPerRow = format == '4' ? (width + 7) / 8 : (maxValue > 0xFF ? 2 : 1) * width;
+    //as a row has at least as many bytes as words, this also bounds the size of the packed image
+    if (buffer.remaining() < (long) bytesPerRow * height) {
+      throw new IOException("Truncated netpbm image");
+    }
+    final BinaryImage result = new BinaryImage(height, width);
+    if (format == '4') {
+      //in a bitmap, 1 is black
+      unpackBitRows(buffer, buffer.position(), bytesPerRow, true, false, result);
+      return result;
+    }
+
+    final long[] words = result.words();
+    final int wordsPerRow = result.wordsPerRow();
+    for (int i = 0; i < height; i++) {
+      final int from = buffer.position() + i * bytesPerRow;
+      final int to = i * wordsPerRow;
+      for (int j = 0; j < width; j++) {
+        final int value = maxValue > 0xFF ? buffer.getShort(from + 2 * j) & 0xFFFF : buffer.get(from + j) & 0xFF;
+        if (2 * value < maxValue) {
+          words[to + (j >>> 6)] |= 1L << j;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Reads a decimal value of a netpbm header, along with the whitespace and
+   * comments before it and the whitespace character after it.
+   *
+   * @param buffer the content of the file, positioned in the header.
+   * @return the value.
+   * @throws IOException if the header is malformed.
+   */
+  private static int readNetpbmValue(final ByteBuffer buffer) throws IOException {
+    int c = readNetpbmHeader(buffer);
+    while (c == '#' || Character.isWhitespace(c)) {
+      //a comment runs until the end of the line
+      if (c == '#') {
+        while (c != '\n' && c != '\r') {
+          c = readNetpbmHeader(buffer);
+        }
+      }
+      c = readNetpbmHeader(buffer);
+    }
+    if (c < '0' || c > '9') {
+      throw new IOException("Malformed netpbm header");
+    }
+    int value = 0;
+    while (c >= '0' && c <= '9') {
+      value = 10 * value + c - '0';
+      if (value > 1 << 24) {
+        throw new IOException("Malformed netpbm header");
+      }
+      c = readNetpbmHeader(buffer);
+    }
+    if (!Character.isWhitespace(c)) {
+      throw new IOException("Malformed netpbm header");
+    }
+    return value;
+  }
+
+  /**
+   * @param buffer the content of the file, positioned in the header.
+   * @return the next character of the header.
+   * @throws IOException if the file ends in the header.
+   */
+  private static int readNetpbmHeader(final ByteBuffer buffer) throws IOException {
+    if (!buffer.hasRemaining()) {
+      throw new IOException("Truncated netpbm header");
+    }
+    return buffer.get() & 0xFF;
+  }
+
+  /**
+   * @param name the path of an image.
+   * @return <code>true</code> if the extension of the image is one of the
+   *         netpbm formats supported.
+   */
+  private static boolean isNetpbm(final String name) {
+    final String lower = name.toLowerCase();
+    return lower.endsWith(".pbm") || lower.endsWith(".pgm") || lower.endsWith(".pnm");
+  }
+
+  /**
+   * Reads specified image from the resource folder.
+   *
+   * @param name Name of the image to read, or path relative to the resource
+   *             folder.
+   * @return the image, or <code>null</code> on failure
+   */
+  private static BufferedImage readImage(final String name) {
+    try {
+      // final BufferedImage image = ImageIO.read(Helper.class.getResource(name));
+      final BufferedImage image = ImageIO.read(new File(name));
+      if (image == null) {
+        System.out.println("No reader for the image format. Filename: " + name);
+      }
+      return image;
+    } catch (final IOException e) {
+      System.out.println(e + " Filename: " + name);
+      return null;
+    }
   }
 
   /**
@@ -88,6 +280,22 @@ public final class Helper {
     return writeARGB(path, fromBinary(array));
   }
 
+  /**
+   * Writes specified packed binary image to disk.
+   *
+   * @param path  Output file path
+   * @param image the packed binary image
+   * @return {@code true} if write operation was successful, {@code false}
+   *         otherwise
+   * @see #readBinaryImage(String)
+   */
+  public static boolean writeBinary(final String path, final BinaryImage image) {
+    if (path.toLowerCase().endsWith(".pbm") || path.toLowerCase().endsWith(".pnm")) {
+      return writePbm(path, image);
+    }
+    return writeARGB(path, fromBinary(image));
+  }
+
   /**
    * Writes specified image to disk.
    *
@@ -106,7 +314,13 @@ public final class Helper {
     final int index = path.lastIndexOf('.');
     if (index < 0)
       return false;
-    final String extension = path.substring(index + 1);
+    final String extension = path.substring(index + 1).toLowerCase();
+    if (extension.equals("pbm") || extension.equals("pnm")) {
+      return writePbm(path, toBinaryImage(array));
+    }
+    if (extension.equals("pgm")) {
+      return writePgm(path, array);
+    }
 
     // Export image
     try {
@@ -116,6 +330,107 @@ public final class Helper {
     }
   }
 
+  /**
+   * Writes a packed binary image as a netpbm bitmap (P4).
+   *
+   * @param path  Output file path
+   * @param image the packed binary image.
+   * @return {@code true} if write operation was successful, {@code false}
+   *         otherwise
+   * @see #readNetpbm(String)
+   */
+  private static boolean writePbm(final String path, final BinaryImage image) {
+    final byte[] header = ("P4\n" + image.width() + " " + image.height() + "\n").getBytes(StandardCharsets.US_ASCII);
+    final int bytesPerRow = (image.width() + 7) / 8;
+    final ByteBuffer content = ByteBuffer.allocate(header.length + bytesPerRow * image.height());
+    content.put(header);
+    final long[] words = image.words();
+    for (int i = 0; i < image.height(); i++) {
+      final int from = i * image.wordsPerRow();
+      for (int k = 0; k < bytesPerRow; k++) {
+        //the first pixel of a byte is its high bit
+        final int pixels = (int) (words[from + (k >>> 3)] >>> ((k & 7) * 8)) & 0xFF;
+        content.put((byte) (Integer.reverse(pixels) >>> 24));
+      }
+    }
+    return write(path, content);
+  }
+
+  /**
+   * Writes the luminance of an image as a netpbm grey image (P5).
+   *
+   * @param path  Output file path
+   * @param array HxW array of packed RGB colors
+   * @return {@code true} if write operation was successful, {@code false}
+   *         otherwise
+   * @see #readNetpbm(String)
+   */
+  private static boolean writePgm(final String path, final int[][] array) {
+    final byte[] header = ("P5\n" + array[0].length + " " + array.length + "\n255\n")
+        .getBytes(StandardCharsets.US_ASCII);
+    final ByteBuffer content = ByteBuffer.allocate(header.length + array[0].length * array.length);
+    content.put(header);
+    for (final int[] row : array) {
+      for (final int pixel : row) {
+        content.put((byte) pixelLuminance(pixel));
+      }
+    }
+    return write(path, content);
+  }
+
+  /**
+   * Writes the content of a file.
+   *
+   * @param path    Output file path
+   * @param content the content, written up to its position.
+   * @return {@code true} if write operation was successful, {@code false}
+   *         otherwise
+   */
+  private static boolean write(final String path, final ByteBuffer content) {
+    content.flip();
+    try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.WRITE,
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (content.hasRemaining()) {
+        channel.write(content);
+      }
+      return true;
+    } catch (final IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Converts every PNG image of a directory to a netpbm bitmap (P4), binarized
+   * as by {@link #readBinaryImage(String)}, so that it can then be read
+   * without decoding the PNG.
+   *
+   * @param sourceDirectory the directory of the PNG images.
+   * @param targetDirectory the directory of the bitmaps, created if needed.
+   *                        Each bitmap has the name of its image, with the
+   *                        <code>.pbm</code> extension.
+   * @return the number of images converted, or <code>-1</code> if a directory
+   *         cannot be accessed.
+   */
+  public static int convertToPbm(final String sourceDirectory, final String targetDirectory) {
+    final Path target = Paths.get(targetDirectory);
+    int converted = 0;
+    try (DirectoryStream<Path> images = Files.newDirectoryStream(Paths.get(sourceDirectory), "*.png")) {
+      Files.createDirectories(target);
+      for (final Path image : images) {
+        final String name = image.getFileName().toString();
+        final BinaryImage binary = readBinaryImage(image.toString());
+        if (binary != null
+            && writePbm(target.resolve(name.substring(0, name.length() - 4) + ".pbm").toString(), binary)) {
+          ++converted;
+        }
+      }
+    } catch (final IOException e) {
+      System.out.println(e + " Directory: " + sourceDirectory);
+      return -1;
+    }
+    return converted;
+  }
+
   /**
    * Convert specified BufferedImage into an array
    *
@@ -250,12 +565,213 @@ public final class Helper {
     final boolean[][] result = new boolean[image.length][image[0].length];
     for (int i = 0; i < result.length; i++) {
       for (int j = 0; j < result[i].length; j++) {
-        result[i][j] = pixelLuminance(image[i][j]) < 128;
+        result[i][j] = isDark(image[i][j]);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Tells whether a pixel is black in the binary version of an image, that is,
+   * whether its rounded luminance is strictly below <code>128</code>, using
+   * integer arithmetic.
+   *
+   * @param pixel the pixel's ARGB value as an int.
+   * @return <code>true</code> if the pixel is dark.
+   * @see #toBinary(int[][])
+   */
+  static boolean isDark(final int pixel) {
+    final int red = (pixel >> 16) & 0xFF;
+    final int green = (pixel >> 8) & 0xFF;
+    final int blue = pixel & 0xFF;
+    final int luma = LUMA_RED * red + LUMA_GREEN * green + LUMA_BLUE * blue;
+    //the floating-point luminance of an exact tie is sometimes rounded down, so
+    //ties are rounded as before to keep every colour on the same side
+    return luma == LUMA_THRESHOLD ? pixelLuminance(pixel) < 128 : luma < LUMA_THRESHOLD;
+  }
+
+  /**
+   * Converts an ARGB image to a packed binary image, using the same threshold
+   * as {@link #toBinary(int[][])}.
+   *
+   * @param image array containing each pixel's ARGB value as an int.
+   * @return the packed binary image.
+   */
+  public static BinaryImage toBinaryImage(final int[][] image) {
+    final BinaryImage result = new BinaryImage(image.length, image[0].length);
+    for (int i = 0; i < image.length; i++) {
+      for (int j = 0; j < image[i].length; j++) {
+        if (isDark(image[i][j])) {
+          result.set(i, j, true);
+        }
       }
     }
     return result;
   }
 
+  /**
+   * Converts an image to a packed binary image, using the same threshold as
+   * {@link #toBinary(int[][])} but reading the pixels from the raster of the
+   * image, without any ARGB copy.
+   * <p>
+   * The images of less than 8 bits per pixel, such as
+   * {@link BufferedImage#TYPE_BYTE_BINARY}, and of one byte per pixel, such as
+   * {@link BufferedImage#TYPE_BYTE_GRAY}, are read from their data buffer: the
+   * colour of each possible pixel value is thresholded once, and 1-bit images
+   * are converted 8 pixels at a time. The other images are converted one row
+   * at a time.
+   *
+   * @param image the image.
+   * @return the packed binary image.
+   */
+  public static BinaryImage toBinaryImage(final BufferedImage image) {
+    final BinaryImage result = new BinaryImage(image.getHeight(), image.getWidth());
+    final WritableRaster raster = image.getRaster();
+    final SampleModel model = raster.getSampleModel();
+    //a raster shared with a larger image does not start at the start of its buffer
+    final boolean direct = raster.getDataBuffer() instanceof DataBufferByte
+        && raster.getDataBuffer().getNumBanks() == 1
+        && raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0;
+
+    if (direct && model instanceof MultiPixelPackedSampleModel) {
+      toBinaryImage((MultiPixelPackedSampleModel) model, (DataBufferByte) raster.getDataBuffer(),
+          darkValues(image.getColorModel(), model.getSampleSize(0)), result);
+    } else if (direct && model instanceof ComponentSampleModel && model.getNumBands() == 1
+        && model.getSampleSize(0) == 8) {
+      toBinaryImage((ComponentSampleModel) model, (DataBufferByte) raster.getDataBuffer(),
+          darkValues(image.getColorModel(), 8), result);
+    } else {
+      final int[] row = new int[result.width()];
+      for (int i = 0; i < result.height(); i++) {
+        image.getRGB(0, i, row.length, 1, row, 0, row.length);
+        for (int j = 0; j < row.length; j++) {
+          if (isDark(row[j])) {
+            result.set(i, j, true);
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Thresholds every possible value of a pixel.
+   *
+   * @param model the colour model of the image.
+   * @param bits  the number of bits per pixel.
+   * @return an array telling for each value whether the pixel is dark.
+   */
+  private static boolean[] darkValues(final ColorModel model, final int bits) {
+    final boolean[] dark = new boolean[1 << bits];
+    for (int value = 0; value < dark.length; value++) {
+      dark[value] = isDark(model.getRGB(value));
+    }
+    return dark;
+  }
+
+  /**
+   * Converts an image of several pixels per byte, the first pixel in the high
+   * bits.
+   *
+   * @param model  the sample model of the image.
+   * @param buffer the data of the image.
+   * @param dark   whether each value of a pixel is dark.
+   * @param result the packed binary image, white.
+   */
+  private static void toBinaryImage(final MultiPixelPackedSampleModel model, final DataBufferByte buffer,
+      final boolean[] dark, final BinaryImage result) {
+    final byte[] data = buffer.getData();
+    final int bits = model.getPixelBitStride();
+    final int stride = model.getScanlineStride();
+    final int bitOffset = model.getDataBitOffset();
+    final int height = result.height();
+    final int width = result.width();
+
+    if (bits == 1 && bitOffset % 8 == 0) {
+      unpackBitRows(ByteBuffer.wrap(data), buffer.getOffset() + bitOffset / 8, stride, dark[1], dark[0], result);
+      return;
+    }
+
+    final int mask = (1 << bits) - 1;
+    for (int i = 0; i < height; i++) {
+      final int from = buffer.getOffset() + i * stride;
+      for (int j = 0; j < width; j++) {
+        final int bit = bitOffset + j * bits;
+        final int value = (data[from + (bit >>> 3)] >> (8 - bits - (bit & 7))) & mask;
+        if (dark[value]) {
+          result.set(i, j, true);
+        }
+      }
+    }
+  }
+
+  /**
+   * Converts rows of 8 pixels per byte, the first pixel in the high bit, 64
+   * pixels at a time.
+   *
+   * @param data     the rows.
+   * @param offset   the position of the first row in <code>data</code>.
+   * @param stride   the number of bytes from one row to the next.
+   * @param oneDark  whether a bit set is a dark pixel.
+   * @param zeroDark whether a bit cleared is a dark pixel.
+   * @param result   the packed binary image, white.
+   */
+  private static void unpackBitRows(final ByteBuffer data, final int offset, final int stride, final boolean oneDark,
+      final boolean zeroDark, final BinaryImage result) {
+    final long black = oneDark ? -1L : 0L;
+    final long white = zeroDark ? -1L : 0L;
+    final long[] words = result.words();
+    final int wordsPerRow = result.wordsPerRow();
+    final int width = result.width();
+    final int bytesPerRow = (width + 7) / 8;
+    for (int i = 0; i < result.height(); i++) {
+      final int from = offset + i * stride;
+      final int to = i * wordsPerRow;
+
+      //8 bytes read in big-endian order are 64 pixels in the reverse order of the bits of a word
+      int k = 0;
+      for (; k + 8 <= bytesPerRow; k += 8) {
+        final long pixels = Long.reverse(data.getLong(from + k));
+        words[to + (k >>> 3)] = (pixels & black) | (~pixels & white);
+      }
+      for (; k < bytesPerRow; k++) {
+        final long pixels = Integer.reverse(data.get(from + k) & 0xFF) >>> 24;
+        words[to + (k >>> 3)] |= (((pixels & black) | (~pixels & white)) & 0xFF) << ((k & 7) * 8);
+      }
+      //the last byte may hold pixels past the width
+      if (width % BinaryImage.WORD_SIZE != 0) {
+        words[to + wordsPerRow - 1] &= (1L << width) - 1;
+      }
+    }
+  }
+
+  /**
+   * Converts an image of one byte per pixel.
+   *
+   * @param model  the sample model of the image.
+   * @param buffer the data of the image.
+   * @param dark   whether each value of a pixel is dark.
+   * @param result the packed binary image, white.
+   */
+  private static void toBinaryImage(final ComponentSampleModel model, final DataBufferByte buffer,
+      final boolean[] dark, final BinaryImage result) {
+    final byte[] data = buffer.getData();
+    final int stride = model.getScanlineStride();
+    final int pixelStride = model.getPixelStride();
+    final int offset = buffer.getOffset() + model.getBandOffsets()[0];
+    final long[] words = result.words();
+    final int wordsPerRow = result.wordsPerRow();
+    for (int i = 0; i < result.height(); i++) {
+      final int from = offset + i * stride;
+      final int to = i * wordsPerRow;
+      for (int j = 0; j < result.width(); j++) {
+        if (dark[data[from + j * pixelStride] & 0xFF]) {
+          words[to + (j >>> 6)] |= 1L << j;
+        }
+      }
+    }
+  }
+
   /**
    * Converts a binary image to an ARBG image.
    *
@@ -273,6 +789,23 @@ public final class Helper {
     return result;
   }
 
+  /**
+   * Converts a packed binary image to an ARBG image.
+   *
+   * @param image the packed binary image.
+   * @return Array containing each pixel's ARGB value as an int. Black pixels
+   *         stay black while white pixels stay white.
+   */
+  public static int[][] fromBinary(final BinaryImage image) {
+    final int[][] result = new int[image.height()][image.width()];
+    for (int i = 0; i < result.length; i++) {
+      for (int j = 0; j < result[i].length; j++) {
+        result[i][j] = image.get(i, j) ? 0xFF000000 : 0xFFFFFFFF;
+      }
+    }
+    return result;
+  }
+
   /**
    * Draws a line on an image.
    *
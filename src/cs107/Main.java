@@ -1,8 +1,21 @@
 package cs107;
 
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * This class will not be graded. You can use it to test your program.
@@ -20,18 +33,27 @@ public class Main {
     //---------------------------
 
     //testGetNeighbours();
+    //testNeighbourMask();
 	//testBlackNeighbours();
 	//testTransitions();
     //testConnectedPixels1();
     //testConnectedPixels2();
     //testConnectedPixels3();
     //testConnectedPixels4();
+    //testConnectedPixelsWindow();
     //testOrientation();
+    //testOrientationFused();
     //testApplyRotation();
     //testApplyTranslation();
     //testThin();
     //testWithSkeleton();
     //testWithSkeletonConnectedPixels();
+    //testBinaryImage();
+    //testThinReferenceSkeletons();
+    //testThinIncremental();
+    //testThinParallel();
+    //testThinBitSliced();
+    //testExtractParallel();
     
     //testDrawSkeleton("1_1"); //draw skeleton of fingerprint 1_1.png
     //testDrawSkeleton("1_2"); //draw skeleton of fingerprint 1_2.png
@@ -42,6 +64,20 @@ public class Main {
 	 //System.out.println("\n\nMinutiae 1_1: ");
 	 //printMinutiae(Fingerprint.extract(Helper.readBinary("resources/test_outputs/skeleton_1_1.png")));
 	 
+	 //testMinutiaeSet();
+	 //testMatchReference();
+	 //testMatchParallel();
+	 //testHoughAccuracy();
+	 //testMinutiaeTypes();
+	 //testTemplates();
+	 //testGallery();
+	 //testTemplateFormat();
+	 //testGalleryFile();
+	 //testFingerprintCache();
+	 //testEnrollmentPipeline();
+	 //testReadBinaryImage();
+	 //testNetpbm();
+	 //testEvaluation(MatchStrategy.HOUGH, false);
 	 //testCompareAllToFirst();
 	 //testCompareAllTo("1_1");
 	 //testCompareAllTo("1_2");
@@ -127,6 +163,35 @@ public class Main {
     }
   }
   
+  /**
+   * Checks that the neighbours mask of a padded image agrees with
+   * {@link Fingerprint#getNeighbours(boolean[][], int, int)} on every pixel,
+   * border pixels included.
+   */
+  public static void testNeighbourMask() {
+    System.out.print("testNeighbourMask: ");
+    boolean[][] image = Helper.readBinary("resources/test_inputs/1_1_small.png");
+    PaddedBinaryImage padded = PaddedBinaryImage.from(BinaryImage.fromArray(image));
+    for (int row = 0; row < image.length; row++) {
+      for (int col = 0; col < image[row].length; col++) {
+        boolean[] neighbours = Fingerprint.getNeighbours(image, row, col);
+        int mask = Fingerprint.getNeighbours(padded, row, col);
+        for (int k = 0; k < 8; k++) {
+          if (neighbours[k] != ((mask & (1 << k)) != 0)) {
+            System.out.println("ERROR at " + row + ", " + col);
+            return;
+          }
+        }
+        if (Fingerprint.blackNeighbours(mask) != Fingerprint.blackNeighbours(neighbours)
+            || Fingerprint.transitions(mask) != Fingerprint.transitions(neighbours)) {
+          System.out.println("ERROR at " + row + ", " + col);
+          return;
+        }
+      }
+    }
+    System.out.println("OK");
+  }
+
   public static void testBlackNeighbours() {
 	  System.out.print("test blackNeighbours:");
 	    boolean[] image = {true, true, true, true, true, true, true, true};
@@ -254,6 +319,37 @@ public class Main {
     }
   }
 
+  /**
+   * Checks that the windowed connected pixels agree with
+   * {@link Fingerprint#connectedPixels(boolean[][], int, int, int)} on the
+   * examples above, reusing the same buffers for every call.
+   */
+  public static void testConnectedPixelsWindow() {
+    boolean[][][] images = {
+        {{true, false, false, true}, {false, false, true, true}, {false, true, true, false}, {false, false, false, false}},
+        {{true, false, true, true}, {false, false, true, true}, {false, true, true, false}, {false, false, false, false}},
+        {{true, false, false, true, true}, {true, false, true, true, false}, {true, true, false, false, false}, {false, true, false, true, false}},
+        {{true, true, false, true, true}, {true, false, true, false, true}, {true, true, false, true, true}, {true, true, true, true, true}}};
+    int[] distances = {10, 1, 2, 1};
+    ConnectedPixels scratch = new ConnectedPixels(1);
+    for (int t = 0; t < images.length; t++) {
+      System.out.print("testConnectedPixelsWindow" + (t + 1) + ": ");
+      boolean[][] image = images[t];
+      PaddedBinaryImage padded = PaddedBinaryImage.from(BinaryImage.fromArray(image));
+      boolean[][] expected = Fingerprint.connectedPixels(image, 2, 1, distances[t]);
+      ConnectedPixels computed = Fingerprint.connectedPixels(padded, 2, 1, distances[t], scratch);
+      if (arrayEqual(computed.toArray(image.length, image[0].length), expected)) {
+        System.out.println("OK");
+      } else {
+        System.out.println("ERROR");
+        System.out.print("Expected: ");
+        printArray(expected);
+        System.out.print("Computed: ");
+        printArray(computed.toArray(image.length, image[0].length));
+      }
+    }
+  }
+
   /**
    * This function is here to help you test the functionalities of
    * computeOrientation. You are free to modify and/or delete it.
@@ -267,6 +363,28 @@ public class Main {
     System.out.println("Expected angle: 35\t Computed angle: " + angle);
   }
 
+  /**
+   * Checks that the fused orientation gives the same angle as
+   * {@link Fingerprint#computeOrientation(boolean[][], int, int, int)} for every
+   * minutia of the reference skeleton of fingerprint 1_1.
+   */
+  public static void testOrientationFused() {
+    System.out.print("testOrientationFused: ");
+    boolean[][] skeleton = Helper.readBinary("resources/test_outputs/skeleton_1_1.png");
+    PaddedBinaryImage padded = PaddedBinaryImage.from(BinaryImage.fromArray(skeleton));
+    ConnectedPixels scratch = new ConnectedPixels(Fingerprint.ORIENTATION_DISTANCE);
+    for (int[] minutia : Fingerprint.extract(skeleton)) {
+      int expected = Fingerprint.computeOrientation(skeleton, minutia[0], minutia[1], Fingerprint.ORIENTATION_DISTANCE);
+      int computed = Fingerprint.computeOrientation(
+          Fingerprint.connectedPixels(padded, minutia[0], minutia[1], Fingerprint.ORIENTATION_DISTANCE, scratch));
+      if (computed != expected) {
+        System.out.println("ERROR at " + minutia[0] + ", " + minutia[1] + ". Expected: " + expected + " Computed: " + computed);
+        return;
+      }
+    }
+    System.out.println("OK");
+  }
+
   /**
    * This function is here to help you test the functionalities of
    * applyRotation. You are free to modify and/or delete it.
@@ -336,6 +454,132 @@ public class Main {
 	    Helper.writeBinary("skeleton_1_1_test.png", skeleton2);
   }
 
+  /**
+   * Checks that the packed pipeline gives the same skeleton and minutiae as the
+   * <code>boolean[][]</code> one on fingerprint 1_1.
+   */
+  public static void testBinaryImage() {
+	  boolean[][] image = Helper.readBinary("resources/fingerprints/1_1.png");
+	  BinaryImage packed = Helper.readBinaryImage("resources/fingerprints/1_1.png");
+	  System.out.print("testBinaryImage conversion: ");
+	  System.out.println(arrayEqual(BinaryImage.fromArray(image).toArray(), image) ? "OK" : "ERROR");
+
+	  boolean[][] skeleton = Helper.readBinary("resources/test_outputs/skeleton_1_1.png");
+	  BinaryImage packedSkeleton = Fingerprint.thin(packed);
+	  System.out.print("testBinaryImage thin: ");
+	  System.out.println(arrayEqual(packedSkeleton.toArray(), skeleton) ? "OK" : "ERROR");
+
+	  System.out.print("testBinaryImage extract: ");
+	  System.out.println(minutiaeEqual(Fingerprint.extract(packedSkeleton), Fingerprint.extractReference(skeleton)) ? "OK" : "ERROR");
+  }
+
+  /**
+   * Compares the skeletons computed by the lookup table thinning with the
+   * reference skeletons of <code>resources/test_outputs</code>, then with the
+   * skeletons of the original pixel by pixel thinning on every fingerprint,
+   * along with the minutiae extracted from them.
+   */
+  public static void testThinReferenceSkeletons() {
+	  for (String name : new String[] {"1_1", "1_2", "2_1"}) {
+		  System.out.print("testThinReferenceSkeletons " + name + ": ");
+		  BinaryImage image = Helper.readBinaryImage("resources/fingerprints/" + name + ".png");
+		  BinaryImage expected = Helper.readBinaryImage("resources/test_outputs/skeleton_" + name + ".png");
+		  System.out.println(Fingerprint.identical(Fingerprint.thin(image), expected) ? "OK" : "ERROR");
+	  }
+
+	  int errors = 0;
+	  for (int f = 1; f <= 16; f++) {
+		  for (int i = 1; i <= 8; i++) {
+			  String name = "resources/fingerprints/" + f + "_" + i + ".png";
+			  boolean[][] expected = Fingerprint.thinReference(Helper.readBinary(name));
+			  BinaryImage skeleton = Fingerprint.thin(Helper.readBinaryImage(name));
+			  if (!arrayEqual(skeleton.toArray(), expected)
+					  || !minutiaeEqual(Fingerprint.extract(skeleton), Fingerprint.extractReference(expected))) {
+				  System.out.println("testThinReferenceSkeletons ERROR on " + f + "_" + i);
+				  ++errors;
+			  }
+		  }
+	  }
+	  System.out.println("testThinReferenceSkeletons all fingerprints: " + (errors == 0 ? "OK" : errors + " ERROR(S)"));
+  }
+
+  /**
+   * Checks that the incremental thinning gives the same skeleton as
+   * {@link Fingerprint#thin(BinaryImage)} on every fingerprint.
+   */
+  public static void testThinIncremental() {
+	  int errors = 0;
+	  for (int f = 1; f <= 16; f++) {
+		  for (int i = 1; i <= 8; i++) {
+			  BinaryImage image = Helper.readBinaryImage("resources/fingerprints/" + f + "_" + i + ".png");
+			  if (!Fingerprint.identical(Fingerprint.thinIncremental(image), Fingerprint.thin(image))) {
+				  System.out.println("testThinIncremental ERROR on " + f + "_" + i);
+				  ++errors;
+			  }
+		  }
+	  }
+	  System.out.println("testThinIncremental: " + (errors == 0 ? "OK" : errors + " ERROR(S)"));
+  }
+
+  /**
+   * Checks that the banded parallel thinning gives the same skeleton as
+   * {@link Fingerprint#thin(BinaryImage)} on every fingerprint, with the
+   * smallest possible bands.
+   */
+  public static void testThinParallel() {
+	  ForkJoinPool pool = new ForkJoinPool();
+	  int errors = 0;
+	  for (int f = 1; f <= 16; f++) {
+		  for (int i = 1; i <= 8; i++) {
+			  BinaryImage image = Helper.readBinaryImage("resources/fingerprints/" + f + "_" + i + ".png");
+			  if (!Fingerprint.identical(Fingerprint.thinParallel(image, pool, 1), Fingerprint.thin(image))) {
+				  System.out.println("testThinParallel ERROR on " + f + "_" + i);
+				  ++errors;
+			  }
+		  }
+	  }
+	  pool.shutdown();
+	  System.out.println("testThinParallel: " + (errors == 0 ? "OK" : errors + " ERROR(S)"));
+  }
+
+  /**
+   * Checks that the bit-sliced thinning gives the same skeleton as
+   * {@link Fingerprint#thin(BinaryImage)} on every fingerprint.
+   */
+  public static void testThinBitSliced() {
+	  int errors = 0;
+	  for (int f = 1; f <= 16; f++) {
+		  for (int i = 1; i <= 8; i++) {
+			  BinaryImage image = Helper.readBinaryImage("resources/fingerprints/" + f + "_" + i + ".png");
+			  if (!Fingerprint.identical(Fingerprint.thinBitSliced(image), Fingerprint.thin(image))) {
+				  System.out.println("testThinBitSliced ERROR on " + f + "_" + i);
+				  ++errors;
+			  }
+		  }
+	  }
+	  System.out.println("testThinBitSliced: " + (errors == 0 ? "OK" : errors + " ERROR(S)"));
+  }
+
+  /**
+   * Checks that the parallel extraction gives the same minutiae, in the same
+   * order, as {@link Fingerprint#extract(BinaryImage)} on every fingerprint.
+   */
+  public static void testExtractParallel() {
+	  ExecutorService executor = Executors.newFixedThreadPool(4);
+	  int errors = 0;
+	  for (int f = 1; f <= 16; f++) {
+		  for (int i = 1; i <= 8; i++) {
+			  BinaryImage skeleton = Fingerprint.thinBitSliced(Helper.readBinaryImage("resources/fingerprints/" + f + "_" + i + ".png"));
+			  if (!minutiaeEqual(Fingerprint.extractParallel(skeleton, executor), Fingerprint.extract(skeleton))) {
+				  System.out.println("testExtractParallel ERROR on " + f + "_" + i);
+				  ++errors;
+			  }
+		  }
+	  }
+	  executor.shutdown();
+	  System.out.println("testExtractParallel: " + (errors == 0 ? "OK" : errors + " ERROR(S)"));
+  }
+
   public static void testDrawSkeleton(String name) {
 	    boolean[][] image1 = Helper.readBinary("resources/fingerprints/" + name + ".png");
 	    boolean[][] skeleton1 = Fingerprint.thin(image1);
@@ -399,6 +643,646 @@ public class Main {
 	    Helper.writeBinary("connectedPixels.png", pixelsMinutiae1);
 	  }
 
+  /**
+   * Checks the conversions of {@link MinutiaeSet} and that its transformation
+   * and matching give the same results as the <code>List&lt;int[]&gt;</code>
+   * versions on fingerprints 1_1 and 1_2.
+   */
+  public static void testMinutiaeSet() {
+	  List<int[]> minutiae1 = Fingerprint.extract(Helper.readBinary("resources/test_outputs/skeleton_1_1.png"));
+	  List<int[]> minutiae2 = Fingerprint.extract(Helper.readBinary("resources/test_outputs/skeleton_1_2.png"));
+	  MinutiaeSet set1 = MinutiaeSet.fromList(minutiae1);
+	  MinutiaeSet set2 = MinutiaeSet.fromList(minutiae2);
+
+	  System.out.print("testMinutiaeSet conversion: ");
+	  System.out.println(minutiaeEqual(set1.toList(), minutiae1) ? "OK" : "ERROR");
+
+	  System.out.print("testMinutiaeSet transformation: ");
+	  List<int[]> expected = Fingerprint.applyTransformation(minutiae2, 148, 83, 36, -6, 2);
+	  MinutiaeSet computed = Fingerprint.applyTransformation(set2, 148, 83, 36, -6, 2);
+	  System.out.println(minutiaeEqual(computed.toList(), expected) ? "OK" : "ERROR");
+
+	  System.out.print("testMinutiaeSet count: ");
+	  int expectedCount = Fingerprint.matchingMinutiaeCount(minutiae1, expected, Fingerprint.DISTANCE_THRESHOLD, Fingerprint.ORIENTATION_THRESHOLD);
+	  int computedCount = Fingerprint.matchingMinutiaeCount(set1, computed, Fingerprint.DISTANCE_THRESHOLD, Fingerprint.ORIENTATION_THRESHOLD);
+	  System.out.println(computedCount == expectedCount ? "OK" : "ERROR");
+
+	  System.out.print("testMinutiaeSet indexed count: ");
+	  MinutiaeGrid grid = new MinutiaeGrid(computed, Fingerprint.DISTANCE_THRESHOLD);
+	  int indexedCount = Fingerprint.matchingMinutiaeCount(set1, grid, Fingerprint.DISTANCE_THRESHOLD, Fingerprint.ORIENTATION_THRESHOLD);
+	  System.out.println(indexedCount == expectedCount ? "OK" : "ERROR");
+
+	  System.out.print("testMinutiaeSet match: ");
+	  System.out.println(Fingerprint.match(set1, set2) == Fingerprint.matchReference(minutiae1, minutiae2) ? "OK" : "ERROR");
+
+	  //the same engine is reused for both comparisons
+	  System.out.print("testMinutiaeSet matching engine: ");
+	  MatchingEngine engine = new MatchingEngine();
+	  MinutiaeSet set3 = MinutiaeSet.fromList(Fingerprint.extract(Helper.readBinary("resources/test_outputs/skeleton_2_1.png")));
+	  System.out.println(engine.match(set1, set2) && !engine.match(set1, set3) ? "OK" : "ERROR");
+  }
+
+  /**
+   * Checks that {@link MatchingEngine#match(MinutiaeSet, MinutiaeSet)}, which
+   * stops as soon as an alignment is found or cannot be, decides as the
+   * reference matcher transforming whole lists, comparing the first image of
+   * each finger with its second image and with the first image of the next
+   * finger. The reference takes a few seconds per pair that does not match.
+   */
+  public static void testMatchReference() {
+	  MatchingEngine engine = new MatchingEngine();
+	  int errors = 0;
+	  for (int f = 1; f <= 16; f++) {
+		  List<int[]> minutiae1 = Fingerprint.extract(Fingerprint.thinBitSliced(Helper.readBinaryImage("resources/fingerprints/" + f + "_1.png")));
+		  for (String name : new String[] {f + "_2", (f % 16 + 1) + "_1"}) {
+			  List<int[]> minutiae2 = Fingerprint.extract(Fingerprint.thinBitSliced(Helper.readBinaryImage("resources/fingerprints/" + name + ".png")));
+			  if (engine.match(MinutiaeSet.fromList(minutiae1), MinutiaeSet.fromList(minutiae2)) != Fingerprint.matchReference(minutiae1, minutiae2)) {
+				  System.out.println("testMatchReference ERROR on " + f + "_1 and " + name);
+				  ++errors;
+			  }
+		  }
+	  }
+	  System.out.println("testMatchReference: " + (errors == 0 ? "OK" : errors + " ERROR(S)"));
+  }
+
+  /**
+   * Checks that {@link Fingerprint#matchParallel(MinutiaeSet, MinutiaeSet)}
+   * gives the same result as {@link Fingerprint#match(MinutiaeSet, MinutiaeSet)}
+   * when comparing 1_1 with the first images of fingers 1 to 4.
+   */
+  public static void testMatchParallel() {
+	  MinutiaeSet minutiae1 = MinutiaeSet.fromList(Fingerprint.extract(Fingerprint.thin(Helper.readBinary("resources/fingerprints/1_1.png"))));
+	  int errors = 0;
+	  for (int f = 1; f <= 4; f++) {
+		  for (int i = 1; i <= 2; i++) {
+			  String name = f + "_" + i;
+			  MinutiaeSet minutiae2 = MinutiaeSet.fromList(Fingerprint.extract(Fingerprint.thin(Helper.readBinary("resources/fingerprints/" + name + ".png"))));
+			  if (Fingerprint.matchParallel(minutiae1, minutiae2) != Fingerprint.match(minutiae1, minutiae2)) {
+				  System.out.println("testMatchParallel ERROR on " + name);
+				  ++errors;
+			  }
+		  }
+	  }
+	  System.out.println("testMatchParallel: " + (errors == 0 ? "OK" : errors + " ERROR(S)"));
+  }
+
+  /**
+   * Compares the decisions of {@link MatchStrategy#HOUGH} with the expected
+   * and computed decisions recorded in <code>results_center_m1.txt</code>, and
+   * prints the number of disagreements and the time spent matching.
+   */
+  public static void testHoughAccuracy() {
+	  List<String> lines;
+	  try {
+		  lines = Files.readAllLines(Paths.get("src/cs107/results_center_m1.txt"));
+	  } catch (IOException e) {
+		  System.out.println("testHoughAccuracy ERROR: " + e.getMessage());
+		  return;
+	  }
+
+	  Map<String, MinutiaeSet> minutiae = new HashMap<>();
+	  MatchingEngine engine = new MatchingEngine();
+	  int comparisons = 0;
+	  int falseAccepts = 0;
+	  int falseRejects = 0;
+	  int differences = 0;
+	  long time = 0;
+	  for (String line : lines) {
+		  //ERROR: Compare 1_5 with 2_1. Expected match: false. Computed match: true. Match cnt: 20
+		  String[] words = line.substring(line.indexOf("Compare")).split("[ .]+");
+		  String name1 = words[1];
+		  String name2 = words[3];
+		  boolean expected = Boolean.parseBoolean(words[6]);
+		  boolean computed = Boolean.parseBoolean(words[9]);
+		  for (String name : new String[] {name1, name2}) {
+			  if (!minutiae.containsKey(name)) {
+				  BinaryImage skeleton = Fingerprint.thinBitSliced(Helper.readBinaryImage("resources/fingerprints/" + name + ".png"));
+				  minutiae.put(name, MinutiaeSet.fromList(Fingerprint.extract(skeleton)));
+			  }
+		  }
+
+		  long start = System.nanoTime();
+		  boolean isMatch = engine.match(minutiae.get(name1), minutiae.get(name2), MatchStrategy.HOUGH);
+		  time += System.nanoTime() - start;
+
+		  ++comparisons;
+		  if (isMatch && !expected) {
+			  ++falseAccepts;
+		  } else if (!isMatch && expected) {
+			  ++falseRejects;
+		  }
+		  if (isMatch != computed) {
+			  System.out.println("Compare " + name1 + " with " + name2 + ". Expected match: " + expected
+					  + ". Exhaustive match: " + computed + ". Hough match: " + isMatch);
+			  ++differences;
+		  }
+	  }
+	  System.out.println("testHoughAccuracy: " + comparisons + " comparisons, " + falseAccepts + " false accept(s), "
+			  + falseRejects + " false reject(s), " + differences + " difference(s) with the exhaustive strategy, "
+			  + (time / 1000000) + " ms");
+  }
+
+  /**
+   * Checks that extracting the types of the minutiae of 1_1 keeps the legacy
+   * minutiae, and that typed minutiae still match 1_2 and not 2_1.
+   */
+  public static void testMinutiaeTypes() {
+	  boolean[][] skeleton1 = Helper.readBinary("resources/test_outputs/skeleton_1_1.png");
+	  List<int[]> legacy = Fingerprint.extract(skeleton1);
+	  List<int[]> typed = Fingerprint.extract(skeleton1, true);
+
+	  System.out.print("testMinutiaeTypes extraction: ");
+	  boolean valid = typed.size() == legacy.size();
+	  for (int i = 0; valid && i < typed.size(); i++) {
+		  int[] minutia = typed.get(i);
+		  valid = minutia.length == 4 && Arrays.equals(Arrays.copyOf(minutia, 3), legacy.get(i))
+				  && (minutia[3] == Fingerprint.MINUTIA_ENDING || minutia[3] == Fingerprint.MINUTIA_BIFURCATION);
+	  }
+	  System.out.println(valid ? "OK" : "ERROR");
+
+	  System.out.print("testMinutiaeTypes conversion: ");
+	  System.out.println(minutiaeEqual(MinutiaeSet.fromList(typed).toList(true), typed) ? "OK" : "ERROR");
+
+	  System.out.print("testMinutiaeTypes match: ");
+	  MinutiaeSet minutiae1 = MinutiaeSet.fromList(typed);
+	  MinutiaeSet minutiae2 = MinutiaeSet.fromList(Fingerprint.extract(Helper.readBinary("resources/test_outputs/skeleton_1_2.png"), true));
+	  MinutiaeSet minutiae3 = MinutiaeSet.fromList(Fingerprint.extract(Helper.readBinary("resources/test_outputs/skeleton_2_1.png"), true));
+	  boolean matched = true;
+	  for (MatchStrategy strategy : MatchStrategy.values()) {
+		  matched &= Fingerprint.match(minutiae1, minutiae2, strategy) && !Fingerprint.match(minutiae1, minutiae3, strategy);
+	  }
+	  System.out.println(matched ? "OK" : "ERROR");
+
+	  //the list entry points keep and use the types as the sets do
+	  System.out.print("testMinutiaeTypes lists: ");
+	  List<int[]> typed2 = minutiae2.toList(true);
+	  List<int[]> transformed = Fingerprint.applyTransformation(typed2, 148, 83, 36, -6, 2);
+	  MinutiaeSet transformedSet = Fingerprint.applyTransformation(minutiae2, 148, 83, 36, -6, 2);
+	  valid = minutiaeEqual(transformed, transformedSet.toList(true));
+	  valid &= Fingerprint.matchingMinutiaeCount(typed, transformed, Fingerprint.DISTANCE_THRESHOLD, Fingerprint.ORIENTATION_THRESHOLD)
+			  == Fingerprint.matchingMinutiaeCount(minutiae1, transformedSet, Fingerprint.DISTANCE_THRESHOLD, Fingerprint.ORIENTATION_THRESHOLD);
+	  valid &= Fingerprint.matchReference(typed, typed2) && !Fingerprint.matchReference(typed, minutiae3.toList(true));
+	  ExecutorService executor = Executors.newFixedThreadPool(2);
+	  try {
+		  valid &= minutiaeEqual(Fingerprint.extractParallel(BinaryImage.fromArray(skeleton1), executor, true), typed);
+	  } finally {
+		  executor.shutdown();
+	  }
+	  System.out.println(valid ? "OK" : "ERROR");
+  }
+
+  /**
+   * Checks that the descriptors of the minutiae of 1_1 do not change when the
+   * fingerprint is rotated, and that templates of 1_1 match 1_2 and not 2_1.
+   */
+  public static void testTemplates() {
+	  FingerprintTemplate template1 = FingerprintTemplate.extract(Helper.readBinaryImage("resources/test_outputs/skeleton_1_1.png"));
+	  MinutiaeSet rotated = Fingerprint.applyTransformation(template1.minutiae(), 100, 100, 0, 0, 90);
+	  MinutiaDescriptors descriptors = template1.descriptors();
+	  MinutiaDescriptors rotatedDescriptors = MinutiaDescriptors.compute(rotated);
+
+	  System.out.print("testTemplates descriptors: ");
+	  boolean invariant = true;
+	  for (int k = 0; k < descriptors.size(); k++) {
+		  invariant &= descriptors.similarity(k, rotatedDescriptors, k) == descriptors.count(k);
+	  }
+	  System.out.println(invariant ? "OK" : "ERROR");
+
+	  System.out.print("testTemplates match: ");
+	  FingerprintTemplate template2 = FingerprintTemplate.extract(Helper.readBinaryImage("resources/test_outputs/skeleton_1_2.png"));
+	  FingerprintTemplate template3 = FingerprintTemplate.extract(Helper.readBinaryImage("resources/test_outputs/skeleton_2_1.png"));
+	  boolean matched = true;
+	  for (MatchStrategy strategy : MatchStrategy.values()) {
+		  matched &= Fingerprint.match(template1, template2, strategy) && !Fingerprint.match(template1, template3, strategy);
+	  }
+	  System.out.println(matched ? "OK" : "ERROR");
+  }
+
+  /**
+   * Enrolls every fingerprint except 1_1 in a gallery, and checks that the
+   * candidates returned for 1_1 are all other images of finger 1.
+   */
+  public static void testGallery() {
+	  Gallery gallery = new Gallery();
+	  for (int f = 1; f <= 16; f++) {
+		  for (int i = 1; i <= 8; i++) {
+			  if (f != 1 || i != 1) {
+				  BinaryImage skeleton = Fingerprint.thinBitSliced(Helper.readBinaryImage("resources/fingerprints/" + f + "_" + i + ".png"));
+				  gallery.enroll(f + "_" + i, FingerprintTemplate.extract(skeleton));
+			  }
+		  }
+	  }
+	  FingerprintTemplate probe = FingerprintTemplate.extract(Fingerprint.thinBitSliced(Helper.readBinaryImage("resources/fingerprints/1_1.png")));
+
+	  List<Gallery.Candidate> candidates = gallery.identify(probe);
+	  System.out.println("testGallery candidates for 1_1: " + candidates);
+	  boolean valid = !candidates.isEmpty();
+	  for (int i = 0; i < candidates.size(); i++) {
+		  valid &= candidates.get(i).id().startsWith("1_");
+		  valid &= i == 0 || candidates.get(i - 1).score() >= candidates.get(i).score();
+	  }
+	  System.out.println("testGallery identify: " + (valid ? "OK" : "ERROR"));
+
+	  //a confident hit stops the search
+	  List<Gallery.Candidate> confident = gallery.identify(probe, 1, Fingerprint.FOUND_THRESHOLD, ForkJoinPool.commonPool());
+	  System.out.println("testGallery early termination: " + (confident.size() == 1 && confident.get(0).id().startsWith("1_") ? "OK" : "ERROR"));
+  }
+
+  /**
+   * Writes the templates of every fingerprint, with and without descriptors,
+   * and checks that reading them back gives the same templates.
+   */
+  public static void testTemplateFormat() {
+	  List<FingerprintTemplate> templates = new ArrayList<>();
+	  for (int f = 1; f <= 16; f++) {
+		  for (int i = 1; i <= 8; i++) {
+			  BinaryImage skeleton = Fingerprint.thinBitSliced(Helper.readBinaryImage("resources/fingerprints/" + f + "_" + i + ".png"));
+			  templates.add(FingerprintTemplate.extract(skeleton));
+		  }
+	  }
+
+	  for (boolean withDescriptors : new boolean[] {true, false}) {
+		  try {
+			  ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			  try (TemplateWriter writer = new TemplateWriter(bytes, withDescriptors)) {
+				  for (FingerprintTemplate template : templates) {
+					  writer.write(template);
+				  }
+			  }
+
+			  long start = System.nanoTime();
+			  List<FingerprintTemplate> read = new ArrayList<>();
+			  try (TemplateReader reader = new TemplateReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+				  for (FingerprintTemplate template = reader.read(); template != null; template = reader.read()) {
+					  read.add(template);
+				  }
+			  }
+			  long time = System.nanoTime() - start;
+
+			  boolean valid = read.size() == templates.size();
+			  for (int i = 0; valid && i < read.size(); i++) {
+				  valid = templateEqual(read.get(i), templates.get(i));
+			  }
+			  System.out.println("testTemplateFormat " + (withDescriptors ? "with" : "without") + " descriptors: "
+					  + (valid ? "OK" : "ERROR") + " (" + bytes.size() / templates.size() + " bytes and "
+					  + time / 1000 / templates.size() + " us per template)");
+		  } catch (IOException e) {
+			  System.out.println("testTemplateFormat ERROR: " + e.getMessage());
+		  }
+	  }
+
+	  //a negative length, a huge size, too many neighbours and trailing bytes
+	  byte[][] corrupted = {
+			  {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F},
+			  {6, 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07},
+			  {7, 1, 1, 0, 0, 0, 2, 3},
+			  {3, 0, 0, 0}};
+	  boolean rejected = true;
+	  for (byte[] record : corrupted) {
+		  ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		  bytes.write(TemplateWriter.MAGIC, 0, TemplateWriter.MAGIC.length);
+		  bytes.write(TemplateWriter.VERSION);
+		  bytes.write(record, 0, record.length);
+		  try (TemplateReader reader = new TemplateReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+			  reader.read();
+			  rejected = false;
+		  } catch (IOException e) {
+			  rejected &= e.getMessage().equals("Corrupted template");
+		  }
+	  }
+	  System.out.println("testTemplateFormat corrupted records: " + (rejected ? "OK" : "ERROR"));
+  }
+
+  /**
+   * Stores the templates of every fingerprint in a gallery file, in two
+   * sessions and with small index blocks, and checks that they are read back
+   * and identify 1_1 as the in-memory gallery does.
+   */
+  public static void testGalleryFile() {
+	  Gallery memory = new Gallery();
+	  for (int f = 1; f <= 16; f++) {
+		  for (int i = 1; i <= 8; i++) {
+			  BinaryImage skeleton = Fingerprint.thinBitSliced(Helper.readBinaryImage("resources/fingerprints/" + f + "_" + i + ".png"));
+			  memory.enroll(f + "_" + i, FingerprintTemplate.extract(skeleton));
+		  }
+	  }
+
+	  Path path = null;
+	  try {
+		  path = Files.createTempFile("gallery", ".fpg");
+		  Files.delete(path);
+
+		  //the second session appends to the index written by the first one
+		  for (int session = 0; session < 2; session++) {
+			  try (GalleryFile file = GalleryFile.open(path, 10)) {
+				  for (int index = session * 64; index < (session + 1) * 64; index++) {
+					  file.append(memory.id(index), memory.template(index));
+				  }
+			  }
+		  }
+
+		  //the padding of the mapping is removed when the file is closed
+		  long length = GalleryFile.HEADER_SIZE + (memory.size() + 9) / 10 * (8 + 8 * 10);
+		  for (int index = 0; index < memory.size(); index++) {
+			  FingerprintTemplate template = memory.template(index);
+			  length += 4 + (memory.id(index).length() + 3) / 4 * 4 + 8
+					  + 4 * template.minutiae().size() * (5 + 3 * template.descriptors().neighbours());
+		  }
+		  boolean truncated = Files.size(path) == length;
+
+		  try (GalleryFile file = GalleryFile.open(path)) {
+			  boolean valid = truncated && file.size() == memory.size();
+			  for (int index = 0; valid && index < file.size(); index++) {
+				  valid = file.id(index).equals(memory.id(index)) && templateEqual(file.template(index), memory.template(index));
+			  }
+			  System.out.println("testGalleryFile templates: " + (valid ? "OK" : "ERROR"));
+
+			  FingerprintTemplate probe = memory.template(0);
+			  String expected = memory.identify(probe).toString();
+			  String computed = new Gallery(file, MatchStrategy.HOUGH).identify(probe).toString();
+			  System.out.println("testGalleryFile identify: " + (computed.equals(expected) ? "OK" : "ERROR"));
+		  }
+
+		  //opening reads no record: a corrupted one only fails when its template is read
+		  try (java.nio.channels.FileChannel channel = java.nio.channels.FileChannel.open(path, java.nio.file.StandardOpenOption.READ,
+				  java.nio.file.StandardOpenOption.WRITE)) {
+			  java.nio.ByteBuffer entry = java.nio.ByteBuffer.allocate(8);
+			  channel.read(entry, GalleryFile.HEADER_SIZE + 8);
+			  long record = entry.getLong(0);
+			  channel.write(java.nio.ByteBuffer.allocate(4).putInt(0, -1), record + 4 + (memory.id(0).length() + 3) / 4 * 4);
+		  }
+		  try (GalleryFile file = GalleryFile.open(path)) {
+			  boolean valid = file.size() == memory.size() && templateEqual(file.template(1), memory.template(1));
+			  try {
+				  file.template(0);
+				  valid = false;
+			  } catch (java.io.UncheckedIOException e) {
+				  valid &= file.id(0).equals(memory.id(0));
+			  }
+			  //the templates are views of the mapping, not copies
+			  try {
+				  file.template(1).minutiae().add(0, 0, 0);
+				  valid = false;
+			  } catch (UnsupportedOperationException e) {
+				  //read-only
+			  }
+			  System.out.println("testGalleryFile in place: " + (valid ? "OK" : "ERROR"));
+		  }
+	  } catch (IOException e) {
+		  System.out.println("testGalleryFile ERROR: " + e.getMessage());
+	  } finally {
+		  try {
+			  if (path != null) {
+				  Files.deleteIfExists(path);
+			  }
+		  } catch (IOException e) {
+			  System.out.println("testGalleryFile ERROR: " + e.getMessage());
+		  }
+	  }
+  }
+
+  /**
+   * Checks the hits, misses and evictions of a small {@link FingerprintCache},
+   * and that a second cache finds the templates spilled by the first one.
+   */
+  public static void testFingerprintCache() {
+	  Path spill = null;
+	  try {
+		  spill = Files.createTempDirectory("cache");
+		  Path image = Paths.get("resources/fingerprints/1_1.png");
+
+		  FingerprintCache cache = new FingerprintCache(1, 1, 2, spill);
+		  FingerprintTemplate template = cache.template(image);
+		  boolean valid = cache.template(image) == template;
+		  valid &= cache.templates().hits() == 1 && cache.templates().misses() == 1;
+		  valid &= cache.skeletons().misses() == 1 && cache.binaries().misses() == 1;
+		  valid &= templateEqual(template, FingerprintTemplate.extract(Fingerprint.thinBitSliced(Helper.readBinaryImage(image.toString()))));
+
+		  //the skeleton of 1_1 is evicted by the one of 1_2
+		  cache.template(Paths.get("resources/fingerprints/1_2.png"));
+		  valid &= cache.skeletons().size() == 1 && cache.templates().size() == 2;
+		  System.out.println("testFingerprintCache memory: " + (valid ? "OK" : "ERROR"));
+
+		  FingerprintCache restarted = new FingerprintCache(1, 1, 1, spill);
+		  valid = templateEqual(restarted.template(image), template);
+		  valid &= restarted.templates().diskHits() == 1 && restarted.skeletons().misses() == 0;
+		  System.out.println("testFingerprintCache spill: " + (valid ? "OK" : "ERROR"));
+
+		  //a huge image header or a truncated template is a miss, as is a header whose size overflows an int
+		  try (java.util.stream.Stream<Path> files = Files.list(spill)) {
+			  for (Path file : (Iterable<Path>) files::iterator) {
+				  Files.write(file, file.toString().endsWith(".bin") ? new byte[] {0x20, 0, 0, 0, 0, 0, 0, 1}
+						  : new byte[] {0x7F, -1, -1, -1, 0x7F, -1, -1, -1});
+			  }
+		  }
+		  FingerprintCache corrupted = new FingerprintCache(1, 1, 1, spill);
+		  valid = templateEqual(corrupted.template(image), template);
+		  valid &= corrupted.templates().diskHits() == 0 && corrupted.skeletons().diskHits() == 0
+				  && corrupted.binaries().diskHits() == 0;
+		  valid &= templateEqual(new FingerprintCache(1, 1, 1, spill).template(image), template);
+		  System.out.println("testFingerprintCache corrupted spill: " + (valid ? "OK" : "ERROR"));
+	  } catch (IOException e) {
+		  System.out.println("testFingerprintCache ERROR: " + e.getMessage());
+	  } finally {
+		  if (spill != null) {
+			  try (java.util.stream.Stream<Path> files = Files.list(spill)) {
+				  for (Path file : (Iterable<Path>) files::iterator) {
+					  Files.delete(file);
+				  }
+				  Files.delete(spill);
+			  } catch (IOException e) {
+				  System.out.println("testFingerprintCache ERROR: " + e.getMessage());
+			  }
+		  }
+	  }
+  }
+
+  /**
+   * Enrolls a few fingerprints and a missing file through a small
+   * {@link EnrollmentPipeline}, and compares the templates with the ones
+   * extracted one image at a time.
+   */
+  public static void testEnrollmentPipeline() {
+	  List<Path> images = new ArrayList<>();
+	  for (int f = 1; f <= 3; ++f) {
+		  for (int i = 1; i <= 2; ++i) {
+			  images.add(Paths.get("resources/fingerprints/" + f + "_" + i + ".png"));
+		  }
+	  }
+	  Path missing = Paths.get("resources/fingerprints/missing.png");
+	  images.add(missing);
+
+	  EnrollmentPipeline pipeline = new EnrollmentPipeline(2, 2, 1);
+	  Gallery gallery = new Gallery();
+	  try {
+		  pipeline.run(images.iterator(), (image, template) -> {
+			  if (template != null) {
+				  gallery.enroll(image.toString(), template);
+			  }
+		  });
+	  } catch (InterruptedException e) {
+		  System.out.println("testEnrollmentPipeline ERROR: interrupted");
+		  return;
+	  }
+
+	  boolean valid = gallery.size() == images.size() - 1 && pipeline.emitted() == images.size();
+	  valid &= pipeline.decoding().count() == images.size() && pipeline.decoding().failures() == 1;
+	  valid &= pipeline.extraction().count() == images.size() - 1;
+	  for (int index = 0; index < gallery.size(); ++index) {
+		  BinaryImage image = Helper.readBinaryImage(gallery.id(index));
+		  valid &= templateEqual(gallery.template(index), FingerprintTemplate.extract(Fingerprint.thinBitSliced(image)));
+	  }
+	  System.out.println(pipeline);
+	  System.out.println("testEnrollmentPipeline: " + (valid ? "OK" : "ERROR"));
+
+	  //an iterator failing after two paths stops the run with its exception
+	  Iterator<Path> failing = new Iterator<Path>() {
+		  private int read;
+
+		  @Override
+		  public boolean hasNext() {
+			  if (read == 2) {
+				  throw new java.nio.file.DirectoryIteratorException(new IOException("unreadable"));
+			  }
+			  return true;
+		  }
+
+		  @Override
+		  public Path next() {
+			  return images.get(read++);
+		  }
+	  };
+	  try {
+		  new EnrollmentPipeline(2, 2, 1).run(failing, (image, template) -> {});
+		  valid = false;
+	  } catch (java.nio.file.DirectoryIteratorException e) {
+		  valid = e.getCause().getMessage().equals("unreadable");
+	  } catch (InterruptedException e) {
+		  valid = false;
+	  }
+	  System.out.println("testEnrollmentPipeline failing iterator: " + (valid ? "OK" : "ERROR"));
+  }
+
+  /**
+   * Compares the images read directly from their raster with the ones
+   * converted from ARGB, for the fingerprints, a grey image and 1-bit images
+   * with both palettes.
+   */
+  public static void testReadBinaryImage() {
+	  boolean valid = true;
+	  for (int f = 1; f <= 4; ++f) {
+		  String name = "resources/fingerprints/" + f + "_1.png";
+		  valid &= Arrays.deepEquals(Helper.readBinaryImage(name).toArray(), Helper.toBinary(Helper.readARGB(name)));
+	  }
+
+	  BufferedImage grey = new BufferedImage(70, 3, BufferedImage.TYPE_BYTE_GRAY);
+	  int[][] argb = new int[3][70];
+	  for (int i = 0; i < 3; ++i) {
+		  for (int j = 0; j < 70; ++j) {
+			  grey.getRaster().setSample(j, i, 0, (i * 70 + j) % 256);
+			  argb[i][j] = grey.getRGB(j, i);
+		  }
+	  }
+	  valid &= Arrays.deepEquals(Helper.toBinaryImage(grey).toArray(), Helper.toBinary(argb));
+
+	  //1-bit images with a width that is neither a multiple of 8 nor of 64, with black as 0 and then as 1
+	  java.util.Random random = new java.util.Random(107);
+	  byte[] levels = {(byte) 255, 0};
+	  java.awt.image.IndexColorModel inverted = new java.awt.image.IndexColorModel(1, 2, levels, levels, levels);
+	  for (BufferedImage binary : new BufferedImage[] {new BufferedImage(133, 5, BufferedImage.TYPE_BYTE_BINARY),
+			  new BufferedImage(133, 5, BufferedImage.TYPE_BYTE_BINARY, inverted)}) {
+		  argb = new int[5][133];
+		  for (int i = 0; i < 5; ++i) {
+			  for (int j = 0; j < 133; ++j) {
+				  binary.getRaster().setSample(j, i, 0, random.nextInt(2));
+				  argb[i][j] = binary.getRGB(j, i);
+			  }
+		  }
+		  //the words are compared, so that the bits past the width must be cleared too
+		  valid &= Helper.toBinaryImage(binary).equals(BinaryImage.fromArray(Helper.toBinary(argb)));
+	  }
+	  System.out.println("testReadBinaryImage: " + (valid ? "OK" : "ERROR"));
+  }
+
+  /**
+   * Converts the fingerprints to netpbm bitmaps, checks that they are read as
+   * the original images, and writes and reads back a grey image.
+   */
+  public static void testNetpbm() {
+	  Path directory = null;
+	  try {
+		  directory = Files.createTempDirectory("netpbm");
+		  boolean valid = Helper.convertToPbm("resources/fingerprints", directory.toString()) == 128;
+		  for (int f = 1; f <= 16; ++f) {
+			  BinaryImage png = Helper.readBinaryImage("resources/fingerprints/" + f + "_1.png");
+			  BinaryImage pbm = Helper.readBinaryImage(directory.resolve(f + "_1.pbm").toString());
+			  valid &= Arrays.deepEquals(png.toArray(), pbm.toArray());
+		  }
+
+		  boolean[][] image = Helper.readBinary("resources/test_inputs/1_1_small.png");
+		  String grey = directory.resolve("1_1_small.pgm").toString();
+		  valid &= Helper.writeBinary(grey, image);
+		  valid &= Arrays.deepEquals(Helper.readBinary(grey), image);
+
+		  //a header of 2^24 by 2^24 pixels is rejected as truncated before allocating
+		  Path huge = directory.resolve("huge.pbm");
+		  Files.write(huge, "P4\n16777216 16777216\n".getBytes(java.nio.charset.StandardCharsets.US_ASCII));
+		  valid &= Helper.readBinaryImage(huge.toString()) == null;
+
+		  //a sparse file larger than 2 GB cannot be mapped, and is not read either
+		  Path large = directory.resolve("large.pbm");
+		  try (java.io.RandomAccessFile file = new java.io.RandomAccessFile(large.toFile(), "rw")) {
+			  file.writeBytes("P4\n65536 32769\n");
+			  file.setLength((1L << 31) + 64);
+		  }
+		  valid &= Helper.readBinaryImage(large.toString()) == null;
+		  System.out.println("testNetpbm: " + (valid ? "OK" : "ERROR"));
+	  } catch (IOException e) {
+		  System.out.println("testNetpbm ERROR: " + e.getMessage());
+	  } finally {
+		  if (directory != null) {
+			  try (java.util.stream.Stream<Path> files = Files.list(directory)) {
+				  for (Path file : (Iterable<Path>) files::iterator) {
+					  Files.delete(file);
+				  }
+				  Files.delete(directory);
+			  } catch (IOException e) {
+				  System.out.println("testNetpbm ERROR: " + e.getMessage());
+			  }
+		  }
+	  }
+  }
+
+  /**
+   * Scores every pair of <code>resources/fingerprints</code> with a matcher and
+   * prints its error rates, then checks a few scores against a sequential
+   * computation.
+   *
+   * @param strategy  the way of searching the alignments.
+   * @param symmetric <code>true</code> to score each unordered pair once.
+   */
+  public static void testEvaluation(MatchStrategy strategy, boolean symmetric) {
+	  Evaluation evaluation;
+	  try {
+		  evaluation = Evaluation.run(Paths.get("resources/fingerprints"), strategy, symmetric, ForkJoinPool.commonPool());
+	  } catch (IOException | InterruptedException e) {
+		  System.out.println("testEvaluation ERROR: " + e.getMessage());
+		  return;
+	  }
+	  System.out.println(evaluation);
+
+	  boolean valid = evaluation.size() == 128 && evaluation.id(0).equals("1_1") && evaluation.id(127).equals("16_8");
+	  valid &= evaluation.genuinePairs() == 16 * 8 * 7 && evaluation.impostorPairs() == 128 * 127 - 16 * 8 * 7;
+	  MatchingEngine engine = new MatchingEngine();
+	  for (int i = 0; i < 128; i += 37) {
+		  for (int j = i + 1; j < 128; j += 29) {
+			  valid &= evaluation.score(i, j) == engine.score(evaluation.template(i), evaluation.template(j), strategy, Integer.MAX_VALUE);
+			  valid &= !symmetric || evaluation.score(j, i) == evaluation.score(i, j);
+		  }
+	  }
+	  System.out.println("testEvaluation: " + (valid ? "OK" : "ERROR"));
+  }
+
   public static void printMinutiae(List<int[]> minutiae) {
     for (int[] minutia : minutiae) {
       System.out.print("[");
@@ -506,6 +1390,41 @@ public class Main {
     return true;
   }
 
+  public static boolean templateEqual(FingerprintTemplate template1, FingerprintTemplate template2) {
+	  if (!minutiaeEqual(template1.minutiae().toList(true), template2.minutiae().toList(true))) {
+		  return false;
+	  }
+	  MinutiaDescriptors descriptors1 = template1.descriptors();
+	  MinutiaDescriptors descriptors2 = template2.descriptors();
+	  if (descriptors1.size() != descriptors2.size() || descriptors1.neighbours() != descriptors2.neighbours()) {
+		  return false;
+	  }
+	  for (int k = 0; k < descriptors1.size(); k++) {
+		  if (descriptors1.count(k) != descriptors2.count(k)) {
+			  return false;
+		  }
+		  for (int j = 0; j < descriptors1.count(k); j++) {
+			  if (descriptors1.distance(k, j) != descriptors2.distance(k, j)
+					  || descriptors1.direction(k, j) != descriptors2.direction(k, j)
+					  || descriptors1.orientation(k, j) != descriptors2.orientation(k, j)) {
+				  return false;
+			  }
+		  }
+	  }
+	  return true;
+  }
+
+  public static boolean minutiaeEqual(List<int[]> minutiae1, List<int[]> minutiae2) {
+    if (minutiae1.size() != minutiae2.size())
+      return false;
+
+    for (int i = 0; i < minutiae1.size(); i++) {
+      if (!Arrays.equals(minutiae1.get(i), minutiae2.get(i)))
+        return false;
+    }
+    return true;
+  }
+
   public static void printArray(boolean[][] array) {
     for (boolean[] row : array) {
       for (boolean pixel : row) {
@@ -0,0 +1,22 @@
+package cs107;
+
+/**
+ * The ways of searching the alignment of two sets of minutiae in
+ * {@link Fingerprint#match(MinutiaeSet, MinutiaeSet, MatchStrategy)}.
+ */
+public enum MatchStrategy {
+
+  /**
+   * Tries every pair of minutiae as the anchor of the alignment, and every
+   * rotation within {@link Fingerprint#MATCH_ANGLE_OFFSET} of their difference
+   * of angle, as {@link Fingerprint#match(java.util.List, java.util.List)}.
+   */
+  EXHAUSTIVE,
+
+  /**
+   * Lets every pair of minutiae vote for the rigid transformation bringing one
+   * onto the other, and only verifies the transformations with the most votes.
+   * The decisions may differ from {@link #EXHAUSTIVE}.
+   */
+  HOUGH
+}
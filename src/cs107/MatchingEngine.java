@@ -0,0 +1,522 @@
+package cs107;
+
+import java.util.Arrays;
+
+/**
+ * Compares sets of minutiae as {@link Fingerprint#match(java.util.List,
+ * java.util.List)} does, without allocating for each candidate alignment.
+ * <p>
+ * For each candidate alignment, the second set is transformed into a reused
+ * set and indexed by a reused {@link MinutiaeGrid}. The minutiae of the first
+ * set are then counted one by one, and the count stops as soon as it reaches
+ * {@link Fingerprint#FOUND_THRESHOLD} or as soon as the minutiae left can no
+ * longer reach it.
+ * <p>
+ * With {@link MatchStrategy#HOUGH}, each pair of minutiae instead votes for
+ * the transformation bringing the minutia of the second set onto the minutia
+ * of the first set, rotated by their difference of angle. The votes are
+ * quantized by {@link Fingerprint#HOUGH_ROTATION_BIN} and
+ * {@link Fingerprint#HOUGH_TRANSLATION_BIN}, and only the
+ * {@link Fingerprint#HOUGH_PEAKS} bins with the most votes are counted, which
+ * makes a comparison quadratic instead of quartic in the number of minutiae.
+ * Each bin is verified by rotating the second set around the minutia of its
+ * most central vote, so that the nearby rotations tried make up for the
+ * quantization.
+ * <p>
+ * When comparing {@link FingerprintTemplate templates}, the descriptors of the
+ * minutiae are compared first, and only the pairs with at least
+ * {@link Fingerprint#DESCRIPTOR_MIN_SIMILARITY} similar neighbours are used as
+ * anchors, from the most similar to the least similar, or cast votes.
+ * <p>
+ * Only pairs of minutiae with {@link MinutiaeSet#compatible(int, int)
+ * compatible} types are used as anchors or cast votes, and only they count as
+ * overlapping, so sets extracted with their types try about half as many
+ * alignments.
+ * <p>
+ * An engine holds buffers, so it must not be used by several threads at the
+ * same time. It can be reused for any number of comparisons.
+ */
+public final class MatchingEngine {
+
+  /**
+   * The number of low bits of a vote holding the index of the pair of minutiae.
+   */
+  private static final int PAIR_BITS = 24;
+
+  /**
+   * The number of bits of a vote holding each translation bin.
+   */
+  private static final int TRANSLATION_BITS = 16;
+
+  private final MinutiaeSet transformed = new MinutiaeSet(0);
+  private final MinutiaeGrid grid = new MinutiaeGrid();
+  private long[] votes = new long[0];
+  private int[] candidates = new int[0];
+  private final int[] peakStarts = new int[Fingerprint.HOUGH_PEAKS];
+  private final int[] peakVotes = new int[Fingerprint.HOUGH_PEAKS];
+  private int[] peakValues = new int[0];
+
+  /**
+   * Compares the minutiae from two fingerprint.
+   *
+   * @param minutiae1 the set of minutiae of the first fingerprint.
+   * @param minutiae2 the set of minutiae of the second fingerprint.
+   * @return Returns <code>true</code> if they match and <code>false</code>
+   *         otherwise, as {@link Fingerprint#match(java.util.List,
+   *         java.util.List)}.
+   */
+  public boolean match(final MinutiaeSet minutiae1, final MinutiaeSet minutiae2) {
+    //each minutia of the first set counts at most once
+    if (minutiae1.size() < Fingerprint.FOUND_THRESHOLD) {
+      return false;
+    }
+    for (int k1 = 0; k1 < minutiae1.size(); ++k1) {
+      for (int k2 = 0; k2 < minutiae2.size(); ++k2) {
+        if (MinutiaeSet.compatible(minutiae1.type(k1), minutiae2.type(k2))
+            && matchesAligned(minutiae1, minutiae2, k1, k2)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Compares the minutiae from two fingerprint, searching their alignment with
+   * the given strategy.
+   *
+   * @param minutiae1 the set of minutiae of the first fingerprint.
+   * @param minutiae2 the set of minutiae of the second fingerprint.
+   * @param strategy  the way of searching the alignment.
+   * @return Returns <code>true</code> if an alignment with at least
+   *         {@link Fingerprint#FOUND_THRESHOLD} overlapping minutiae was found.
+   */
+  public boolean match(final MinutiaeSet minutiae1, final MinutiaeSet minutiae2, final MatchStrategy strategy) {
+    switch (strategy) {
+    case EXHAUSTIVE:
+      return match(minutiae1, minutiae2);
+    case HOUGH:
+      return scoreHough(minutiae1, minutiae2, null, null, Fingerprint.FOUND_THRESHOLD) >= Fingerprint.FOUND_THRESHOLD;
+    default:
+      throw new IllegalArgumentException("Unknown strategy: " + strategy);
+    }
+  }
+
+  /**
+   * Compares two templates, only using as anchors the pairs of minutiae whose
+   * descriptors are similar.
+   *
+   * @param template1 the template of the first fingerprint.
+   * @param template2 the template of the second fingerprint.
+   * @param strategy  the way of searching the alignment.
+   * @return Returns <code>true</code> if an alignment with at least
+   *         {@link Fingerprint#FOUND_THRESHOLD} overlapping minutiae was found.
+   */
+  public boolean match(final FingerprintTemplate template1, final FingerprintTemplate template2,
+      final MatchStrategy strategy) {
+    return score(template1, template2, strategy, Fingerprint.FOUND_THRESHOLD) >= Fingerprint.FOUND_THRESHOLD;
+  }
+
+  /**
+   * Scores two templates by the number of overlapping minutiae of their best
+   * alignment, searched as in
+   * {@link #match(FingerprintTemplate, FingerprintTemplate, MatchStrategy)}.
+   *
+   * @param template1 the template of the first fingerprint.
+   * @param template2 the template of the second fingerprint.
+   * @param strategy  the way of searching the alignment.
+   * @param stopScore the score from which the search stops, the score returned
+   *                  being then at least <code>stopScore</code> but possibly
+   *                  not the best one.
+   * @return the largest number of overlapping minutiae among the alignments
+   *         tried if it is at least {@link Fingerprint#FOUND_THRESHOLD}, and
+   *         <code>0</code> otherwise.
+   */
+  public int score(final FingerprintTemplate template1, final FingerprintTemplate template2,
+      final MatchStrategy strategy, final int stopScore) {
+    final MinutiaeSet minutiae1 = template1.minutiae();
+    final MinutiaeSet minutiae2 = template2.minutiae();
+    switch (strategy) {
+    case EXHAUSTIVE:
+      return scoreRanked(minutiae1, minutiae2, template1.descriptors(), template2.descriptors(), stopScore);
+    case HOUGH:
+      return scoreHough(minutiae1, minutiae2, template1.descriptors(), template2.descriptors(), stopScore);
+    default:
+      throw new IllegalArgumentException("Unknown strategy: " + strategy);
+    }
+  }
+
+  /**
+   * Tries the alignments of {@link MatchStrategy#EXHAUSTIVE} on the pairs of
+   * minutiae with similar descriptors, the most similar first.
+   *
+   * @param minutiae1    the set of minutiae of the first fingerprint.
+   * @param minutiae2    the set of minutiae of the second fingerprint.
+   * @param descriptors1 the descriptors of <code>minutiae1</code>.
+   * @param descriptors2 the descriptors of <code>minutiae2</code>.
+   * @param stopScore    the score from which the search stops.
+   * @return the score, as {@link #score(FingerprintTemplate, FingerprintTemplate, MatchStrategy, int)}.
+   */
+  private int scoreRanked(final MinutiaeSet minutiae1, final MinutiaeSet minutiae2,
+      final MinutiaDescriptors descriptors1, final MinutiaDescriptors descriptors2, final int stopScore) {
+    if (minutiae1.size() < Fingerprint.FOUND_THRESHOLD) {
+      return 0;
+    }
+    final long pairs = (long) minutiae1.size() * minutiae2.size();
+    if (pairs >= 1L << PAIR_BITS) {
+      //too many pairs to rank them, which never happens with real fingerprints
+      int best = 0;
+      for (int k1 = 0; k1 < minutiae1.size() && best < stopScore; ++k1) {
+        for (int k2 = 0; k2 < minutiae2.size() && best < stopScore; ++k2) {
+          if (MinutiaeSet.compatible(minutiae1.type(k1), minutiae2.type(k2))) {
+            best = scoreAnchored(minutiae1, minutiae2, k1, k2, best, stopScore);
+          }
+        }
+      }
+      return best;
+    }
+
+    //each candidate packs its similarity above the index of its pair, so that sorting ranks them
+    if (candidates.length < pairs) {
+      candidates = new int[(int) pairs];
+    }
+    int candidateCount = 0;
+    for (int k1 = 0; k1 < minutiae1.size(); ++k1) {
+      for (int k2 = 0; k2 < minutiae2.size(); ++k2) {
+        if (!MinutiaeSet.compatible(minutiae1.type(k1), minutiae2.type(k2))) {
+          continue;
+        }
+        final int similarity = descriptors1.similarity(k1, descriptors2, k2);
+        if (similarity >= Fingerprint.DESCRIPTOR_MIN_SIMILARITY) {
+          candidates[candidateCount++] = similarity << PAIR_BITS | (k1 * minutiae2.size() + k2);
+        }
+      }
+    }
+    Arrays.sort(candidates, 0, candidateCount);
+
+    int best = 0;
+    for (int k = candidateCount - 1; k >= 0 && best < stopScore; --k) {
+      final int pair = candidates[k] & ((1 << PAIR_BITS) - 1);
+      best = scoreAnchored(minutiae1, minutiae2, pair / minutiae2.size(), pair % minutiae2.size(), best, stopScore);
+    }
+    return best;
+  }
+
+  /**
+   * Compares the minutiae from two fingerprint with
+   * {@link MatchStrategy#HOUGH}.
+   *
+   * @param minutiae1    the set of minutiae of the first fingerprint.
+   * @param minutiae2    the set of minutiae of the second fingerprint.
+   * @param descriptors1 the descriptors of <code>minutiae1</code>, or
+   *                     <code>null</code> to let every pair vote.
+   * @param descriptors2 the descriptors of <code>minutiae2</code>, or
+   *                     <code>null</code> to let every pair vote.
+   * @param stopScore    the score from which the search stops.
+   * @return the score of the verified transformations, as
+   *         {@link #score(FingerprintTemplate, FingerprintTemplate, MatchStrategy, int)}.
+   */
+  private int scoreHough(final MinutiaeSet minutiae1, final MinutiaeSet minutiae2,
+      final MinutiaDescriptors descriptors1, final MinutiaDescriptors descriptors2, final int stopScore) {
+    if (minutiae1.size() < Fingerprint.FOUND_THRESHOLD) {
+      return 0;
+    }
+    final long pairs = (long) minutiae1.size() * minutiae2.size();
+    if (pairs >= 1L << PAIR_BITS) {
+      //too many pairs to index the votes, which never happens with real fingerprints
+      return scoreRanked(minutiae1, minutiae2, descriptors1, descriptors2, stopScore);
+    }
+
+    //each vote packs its bins above the index of its pair, so that sorting groups the bins
+    if (votes.length < pairs) {
+      votes = new long[(int) pairs];
+    }
+    int voteCount = 0;
+    for (int k1 = 0; k1 < minutiae1.size(); ++k1) {
+      for (int k2 = 0; k2 < minutiae2.size(); ++k2) {
+        if (!MinutiaeSet.compatible(minutiae1.type(k1), minutiae2.type(k2))
+            || descriptors1 != null
+                && descriptors1.similarity(k1, descriptors2, k2) < Fingerprint.DESCRIPTOR_MIN_SIMILARITY) {
+          continue;
+        }
+        final int pair = k1 * minutiae2.size() + k2;
+        final int rotation = rotation(minutiae1, minutiae2, k1, k2);
+        final int rowBin = Math.floorDiv(rowTranslation(minutiae1, minutiae2, k1, k2, rotation),
+            Fingerprint.HOUGH_TRANSLATION_BIN);
+        final int colBin = Math.floorDiv(colTranslation(minutiae1, minutiae2, k1, k2, rotation),
+            Fingerprint.HOUGH_TRANSLATION_BIN);
+        final long bins = (long) (rotation / Fingerprint.HOUGH_ROTATION_BIN) << (2 * TRANSLATION_BITS)
+            | (long) (rowBin & 0xFFFF) << TRANSLATION_BITS
+            | (colBin & 0xFFFF);
+        votes[voteCount++] = bins << PAIR_BITS | pair;
+      }
+    }
+    Arrays.sort(votes, 0, voteCount);
+
+    //keeps the bins with the most votes, sorted by decreasing number of votes
+    Arrays.fill(peakVotes, 0);
+    int start = 0;
+    while (start < voteCount) {
+      int end = start + 1;
+      while (end < voteCount && votes[end] >>> PAIR_BITS == votes[start] >>> PAIR_BITS) {
+        ++end;
+      }
+      int k = peakVotes.length;
+      while (k > 0 && peakVotes[k - 1] < end - start) {
+        if (k < peakVotes.length) {
+          peakVotes[k] = peakVotes[k - 1];
+          peakStarts[k] = peakStarts[k - 1];
+        }
+        --k;
+      }
+      if (k < peakVotes.length) {
+        peakVotes[k] = end - start;
+        peakStarts[k] = start;
+      }
+      start = end;
+    }
+
+    //verifies each peak around the minutiae of its most central vote, as the exhaustive search would
+    int best = 0;
+    for (int k = 0; k < peakVotes.length && peakVotes[k] > 0 && best < stopScore; ++k) {
+      final int pair = centralPair(minutiae1, minutiae2, peakStarts[k], peakVotes[k]);
+      final int k1 = pair / minutiae2.size();
+      final int k2 = pair % minutiae2.size();
+      best = scoreAligned(minutiae1, minutiae2, minutiae2.row(k2), minutiae2.col(k2),
+          minutiae2.row(k2) - minutiae1.row(k1), minutiae2.col(k2) - minutiae1.col(k1),
+          rotation(minutiae1, minutiae2, k1, k2), best, stopScore);
+    }
+    return best;
+  }
+
+  /**
+   * Chooses the vote of a peak whose transformation is the closest to the
+   * median transformation of the peak, so that a single outlying vote does not
+   * decide the alignment verified.
+   *
+   * @param minutiae1 the set of minutiae of the first fingerprint.
+   * @param minutiae2 the set of minutiae of the second fingerprint.
+   * @param start     the index of the first vote of the peak.
+   * @param count     the number of votes of the peak.
+   * @return the index of the pair of minutiae of the vote.
+   */
+  private int centralPair(final MinutiaeSet minutiae1, final MinutiaeSet minutiae2, final int start,
+      final int count) {
+    if (peakValues.length < 3 * count) {
+      peakValues = new int[3 * count];
+    }
+    //the rotations, then the vertical and the horizontal translations of the votes
+    for (int v = 0; v < count; ++v) {
+      final int pair = (int) (votes[start + v] & ((1 << PAIR_BITS) - 1));
+      final int k1 = pair / minutiae2.size();
+      final int k2 = pair % minutiae2.size();
+      final int rotation = rotation(minutiae1, minutiae2, k1, k2);
+      peakValues[v] = rotation;
+      peakValues[count + v] = rowTranslation(minutiae1, minutiae2, k1, k2, rotation);
+      peakValues[2 * count + v] = colTranslation(minutiae1, minutiae2, k1, k2, rotation);
+    }
+    final int medianRotation = median(peakValues, 0, count);
+    final int medianRow = median(peakValues, count, count);
+    final int medianCol = median(peakValues, 2 * count, count);
+
+    //the medians are computed on sorted copies, so the votes are recomputed
+    int central = 0;
+    int smallestDistance = Integer.MAX_VALUE;
+    for (int v = 0; v < count; ++v) {
+      final int pair = (int) (votes[start + v] & ((1 << PAIR_BITS) - 1));
+      final int k1 = pair / minutiae2.size();
+      final int k2 = pair % minutiae2.size();
+      final int rotation = rotation(minutiae1, minutiae2, k1, k2);
+      final int distance = Math.abs(rotation - medianRotation)
+          + Math.abs(rowTranslation(minutiae1, minutiae2, k1, k2, rotation) - medianRow)
+          + Math.abs(colTranslation(minutiae1, minutiae2, k1, k2, rotation) - medianCol);
+      if (distance < smallestDistance) {
+        smallestDistance = distance;
+        central = pair;
+      }
+    }
+    return central;
+  }
+
+  /**
+   * Sorts part of an array and returns its median.
+   *
+   * @param values the array.
+   * @param from   the index of the first value.
+   * @param count  the number of values, at least one.
+   * @return the lower median of the values.
+   */
+  private static int median(final int[] values, final int from, final int count) {
+    Arrays.sort(values, from, from + count);
+    return values[from + (count - 1) / 2];
+  }
+
+  /**
+   * Scores the alignments that bring minutia <code>k2</code> of the second set
+   * onto minutia <code>k1</code> of the first set, as tried by
+   * {@link #matchesAligned(MinutiaeSet, MinutiaeSet, int, int)}.
+   *
+   * @param minutiae1 the set of minutiae of the first fingerprint.
+   * @param minutiae2 the set of minutiae of the second fingerprint.
+   * @param k1        the index of the reference minutia of the first set.
+   * @param k2        the index of the reference minutia of the second set.
+   * @param best      the best score found so far.
+   * @param stopScore the score from which the search stops.
+   * @return the best score, including these alignments.
+   */
+  private int scoreAnchored(final MinutiaeSet minutiae1, final MinutiaeSet minutiae2, final int k1, final int k2,
+      final int best, final int stopScore) {
+    return scoreAligned(minutiae1, minutiae2, minutiae1.row(k1), minutiae1.col(k1),
+        minutiae2.row(k2) - minutiae1.row(k1), minutiae2.col(k2) - minutiae1.col(k1),
+        minutiae2.angle(k2) - minutiae1.angle(k1), best, stopScore);
+  }
+
+  /**
+   * Scores a transformation and the rotations within
+   * {@link Fingerprint#MATCH_ANGLE_OFFSET} of it.
+   *
+   * @param minutiae1      the first set of minutiae.
+   * @param minutiae2      the second set of minutiae, to be transformed.
+   * @param centerRow      the row around which the second set is rotated.
+   * @param centerCol      the column around which the second set is rotated.
+   * @param rowTranslation the vertical translation.
+   * @param colTranslation the horizontal translation.
+   * @param rotation       the rotation.
+   * @param best           the best score found so far.
+   * @param stopScore      the score from which the search stops.
+   * @return the best score, including these alignments.
+   */
+  private int scoreAligned(final MinutiaeSet minutiae1, final MinutiaeSet minutiae2, final int centerRow,
+      final int centerCol, final int rowTranslation, final int colTranslation, final int rotation, int best,
+      final int stopScore) {
+    for (int r = rotation - Fingerprint.MATCH_ANGLE_OFFSET;
+        r <= rotation + Fingerprint.MATCH_ANGLE_OFFSET && best < stopScore; ++r) {
+      //only the alignments improving the score need an exact count
+      final int target = Math.max(best + 1, Fingerprint.FOUND_THRESHOLD);
+      if (countAligned(minutiae1, minutiae2, centerRow, centerCol, rowTranslation, colTranslation, r,
+          target) >= target) {
+        best = countIndexed(minutiae1);
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Counts the minutiae of the first set overlapping the set currently indexed
+   * by the grid, without stopping early.
+   *
+   * @param minutiae1 the first set of minutiae.
+   * @return the number of overlapping minutiae.
+   */
+  private int countIndexed(final MinutiaeSet minutiae1) {
+    int count = 0;
+    for (int k1 = 0; k1 < minutiae1.size(); ++k1) {
+      if (grid.containsMatch(minutiae1.row(k1), minutiae1.col(k1), minutiae1.angle(k1), minutiae1.type(k1),
+          Fingerprint.DISTANCE_THRESHOLD, Fingerprint.ORIENTATION_THRESHOLD)) {
+        ++count;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @return the rotation, between <code>0</code> and <code>359</code>, bringing
+   *         the angle of minutia <code>k2</code> of the second set onto the angle
+   *         of minutia <code>k1</code> of the first set.
+   */
+  private static int rotation(final MinutiaeSet minutiae1, final MinutiaeSet minutiae2, final int k1, final int k2) {
+    return Math.floorMod(minutiae1.angle(k1) - minutiae2.angle(k2), 360);
+  }
+
+  /**
+   * @return the vertical translation bringing minutia <code>k2</code> of the
+   *         second set, rotated around the origin as in
+   *         {@link Fingerprint#applyRotation(int[], int, int, int)}, onto
+   *         minutia <code>k1</code> of the first set.
+   */
+  private static int rowTranslation(final MinutiaeSet minutiae1, final MinutiaeSet minutiae2, final int k1,
+      final int k2, final int rotation) {
+    final double newY = minutiae2.col(k2) * Fingerprint.sin(rotation) - minutiae2.row(k2) * Fingerprint.cos(rotation);
+    return (int) Math.round(0 - newY) - minutiae1.row(k1);
+  }
+
+  /**
+   * @return the horizontal translation bringing minutia <code>k2</code> of the
+   *         second set, rotated around the origin as in
+   *         {@link Fingerprint#applyRotation(int[], int, int, int)}, onto
+   *         minutia <code>k1</code> of the first set.
+   */
+  private static int colTranslation(final MinutiaeSet minutiae1, final MinutiaeSet minutiae2, final int k1,
+      final int k2, final int rotation) {
+    final double newX = minutiae2.col(k2) * Fingerprint.cos(rotation) + minutiae2.row(k2) * Fingerprint.sin(rotation);
+    return (int) Math.round(newX) - minutiae1.col(k1);
+  }
+
+  /**
+   * Tries the alignments that bring minutia <code>k2</code> of the second set
+   * onto minutia <code>k1</code> of the first set, for each rotation within
+   * {@link Fingerprint#MATCH_ANGLE_OFFSET}.
+   *
+   * @param minutiae1 the set of minutiae of the first fingerprint.
+   * @param minutiae2 the set of minutiae of the second fingerprint.
+   * @param k1        the index of the reference minutia of the first set.
+   * @param k2        the index of the reference minutia of the second set.
+   * @return <code>true</code> if one of the alignments has at least
+   *         {@link Fingerprint#FOUND_THRESHOLD} overlapping minutiae.
+   */
+  boolean matchesAligned(final MinutiaeSet minutiae1, final MinutiaeSet minutiae2, final int k1, final int k2) {
+    final int rowTranslation = minutiae2.row(k2) - minutiae1.row(k1);
+    final int colTranslation = minutiae2.col(k2) - minutiae1.col(k1);
+    final int rotation = minutiae2.angle(k2) - minutiae1.angle(k1);
+    for (int k = rotation - Fingerprint.MATCH_ANGLE_OFFSET; k <= rotation + Fingerprint.MATCH_ANGLE_OFFSET; ++k) {
+      final int count = countAligned(minutiae1, minutiae2, minutiae1.row(k1), minutiae1.col(k1), rowTranslation,
+          colTranslation, k, Fingerprint.FOUND_THRESHOLD);
+      if (count >= Fingerprint.FOUND_THRESHOLD) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Counts the overlapping minutiae of the first set and of the second set after
+   * the given transformation, stopping once the outcome with respect to
+   * <code>target</code> is known.
+   *
+   * @param minutiae1      the first set of minutiae.
+   * @param minutiae2      the second set of minutiae, to be transformed.
+   * @param centerRow      the row around which the second set is rotated.
+   * @param centerCol      the column around which the second set is rotated.
+   * @param rowTranslation the vertical translation.
+   * @param colTranslation the horizontal translation.
+   * @param rotation       the rotation.
+   * @param target         the count of interest.
+   * @return a number that is at least <code>target</code> if and only if the
+   *         number of overlapping minutiae, as computed by
+   *         {@link Fingerprint#matchingMinutiaeCount(MinutiaeSet, MinutiaeSet, int, int)}
+   *         with {@link Fingerprint#DISTANCE_THRESHOLD} and
+   *         {@link Fingerprint#ORIENTATION_THRESHOLD}, is at least
+   *         <code>target</code>.
+   */
+  public int countAligned(final MinutiaeSet minutiae1, final MinutiaeSet minutiae2, final int centerRow,
+      final int centerCol, final int rowTranslation, final int colTranslation, final int rotation, final int target) {
+    Fingerprint.applyTransformation(minutiae2, centerRow, centerCol, rowTranslation, colTranslation, rotation,
+        transformed);
+    grid.index(transformed, Fingerprint.DISTANCE_THRESHOLD);
+
+    int count = 0;
+    final int size = minutiae1.size();
+    for (int k1 = 0; k1 < size; ++k1) {
+      if (grid.containsMatch(minutiae1.row(k1), minutiae1.col(k1), minutiae1.angle(k1), minutiae1.type(k1),
+          Fingerprint.DISTANCE_THRESHOLD, Fingerprint.ORIENTATION_THRESHOLD)) {
+        if (++count >= target) {
+          return count;
+        }
+      } else if (count + size - k1 - 1 < target) {
+        //even if all the remaining minutiae overlap, the target is out of reach
+        return count;
+      }
+    }
+    return count;
+  }
+}
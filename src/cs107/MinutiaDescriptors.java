@@ -0,0 +1,277 @@
+package cs107;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Rotation invariant descriptors of the neighbourhood of each minutia of a
+ * set.
+ * <p>
+ * The descriptor of a minutia is made of its
+ * {@link Fingerprint#DESCRIPTOR_NEIGHBOURS} nearest minutiae in the set. Each
+ * neighbour is described by its distance, the direction in which it is seen
+ * and its own angle, both directions being measured relative to the angle of
+ * the minutia. None of them depends on the position or the rotation of the
+ * fingerprint, so two minutiae that correspond to each other have similar
+ * descriptors, which is checked by {@link #similarity(int, MinutiaDescriptors, int)}
+ * far more cheaply than by aligning the whole sets.
+ * <p>
+ * Descriptors can also be a read-only view of the descriptors stored in a
+ * buffer, such as the mapping of a {@link GalleryFile}, which is then read in
+ * place.
+ */
+public final class MinutiaDescriptors {
+
+  /**
+   * The largest number of neighbours of a descriptor, which bounds the size of
+   * the descriptors read from a template.
+   */
+  public static final int MAX_NEIGHBOURS = 64;
+
+  private final int neighbours;
+  private final int size;
+  private final int[] counts;
+  private final int[] distances;
+  private final int[] directions;
+  private final int[] orientations;
+  private final ByteBuffer mapped;
+
+  /**
+   * Creates descriptors from their arrays, as stored in a template.
+   *
+   * @param neighbours   the maximum number of neighbours of a descriptor.
+   * @param counts       the number of neighbours of each minutia.
+   * @param distances    the distances to the neighbours, <code>neighbours</code>
+   *                     per minutia.
+   * @param directions   the relative directions of the neighbours.
+   * @param orientations the relative angles of the neighbours.
+   */
+  MinutiaDescriptors(final int neighbours, final int[] counts, final int[] distances, final int[] directions,
+      final int[] orientations) {
+    assert (distances.length == counts.length * neighbours);
+    this.neighbours = neighbours;
+    this.size = counts.length;
+    this.counts = counts;
+    this.distances = distances;
+    this.directions = directions;
+    this.orientations = orientations;
+    this.mapped = null;
+  }
+
+  /**
+   * Creates a read-only view of descriptors stored in a buffer.
+   */
+  private MinutiaDescriptors(final ByteBuffer mapped, final int neighbours, final int size) {
+    this.neighbours = neighbours;
+    this.size = size;
+    this.counts = null;
+    this.distances = null;
+    this.directions = null;
+    this.orientations = null;
+    this.mapped = mapped;
+  }
+
+  /**
+   * Wraps descriptors stored in a buffer without copying them: the number of
+   * neighbours of each minutia, then the distances, the directions and the
+   * orientations, <code>neighbours</code> per minutia, as <code>int</code>s
+   * from the start of the buffer.
+   *
+   * @param buffer     the buffer, starting at the first count.
+   * @param neighbours the maximum number of neighbours of a descriptor.
+   * @param size       the number of minutiae described.
+   * @return the read-only view of the descriptors.
+   */
+  static MinutiaDescriptors wrap(final ByteBuffer buffer, final int neighbours, final int size) {
+    assert (neighbours >= 0 && neighbours <= MAX_NEIGHBOURS);
+    assert (buffer.capacity() >= 4L * size * (1 + 3 * neighbours));
+    return new MinutiaDescriptors(buffer, neighbours, size);
+  }
+
+  /**
+   * Computes the descriptors of every minutia of a set, with
+   * {@link Fingerprint#DESCRIPTOR_NEIGHBOURS} neighbours.
+   *
+   * @param minutiae the set of minutiae.
+   * @return the descriptors, in the order of the set.
+   */
+  public static MinutiaDescriptors compute(final MinutiaeSet minutiae) {
+    return compute(minutiae, Fingerprint.DESCRIPTOR_NEIGHBOURS);
+  }
+
+  /**
+   * Computes the descriptors of every minutia of a set.
+   *
+   * @param minutiae   the set of minutiae.
+   * @param neighbours the number of nearest minutiae in a descriptor, at most
+   *                   {@link #MAX_NEIGHBOURS}.
+   * @return the descriptors, in the order of the set.
+   */
+  public static MinutiaDescriptors compute(final MinutiaeSet minutiae, final int neighbours) {
+    assert (neighbours >= 0 && neighbours <= MAX_NEIGHBOURS);
+    final int size = minutiae.size();
+    final int[] counts = new int[size];
+    final int[] distances = new int[size * neighbours];
+    final int[] directions = new int[size * neighbours];
+    final int[] orientations = new int[size * neighbours];
+
+    final int[] nearest = new int[neighbours];
+    final int[] squaredDistances = new int[neighbours];
+    for (int k = 0; k < size; ++k) {
+      //insertion of each other minutia among the nearest ones found so far
+      int count = 0;
+      for (int other = 0; other < size; ++other) {
+        if (other == k) {
+          continue;
+        }
+        final int rowDistance = minutiae.row(other) - minutiae.row(k);
+        final int colDistance = minutiae.col(other) - minutiae.col(k);
+        final int squaredDistance = rowDistance * rowDistance + colDistance * colDistance;
+        int position = count < neighbours ? count++ : neighbours;
+        while (position > 0 && squaredDistances[position - 1] > squaredDistance) {
+          if (position < neighbours) {
+            squaredDistances[position] = squaredDistances[position - 1];
+            nearest[position] = nearest[position - 1];
+          }
+          --position;
+        }
+        if (position < neighbours) {
+          squaredDistances[position] = squaredDistance;
+          nearest[position] = other;
+        }
+      }
+
+      counts[k] = count;
+      for (int j = 0; j < count; ++j) {
+        final int other = nearest[j];
+        //the rows grow downwards, the directions are counterclockwise as for the angles
+        final double direction = Math.toDegrees(Math.atan2(minutiae.row(k) - minutiae.row(other),
+            minutiae.col(other) - minutiae.col(k)));
+        distances[k * neighbours + j] = (int) Math.round(Math.sqrt(squaredDistances[j]));
+        directions[k * neighbours + j] = Math.floorMod((int) Math.round(direction) - minutiae.angle(k), 360);
+        orientations[k * neighbours + j] = Math.floorMod(minutiae.angle(other) - minutiae.angle(k), 360);
+      }
+    }
+    return new MinutiaDescriptors(neighbours, counts, distances, directions, orientations);
+  }
+
+  /**
+   * Counts the neighbours of a minutia that have a similar neighbour in the
+   * descriptor of another minutia: a distance within
+   * {@link Fingerprint#DISTANCE_THRESHOLD}, and a direction and an angle within
+   * {@link Fingerprint#ORIENTATION_THRESHOLD}.
+   *
+   * @param k     the index of the minutia in these descriptors.
+   * @param other the descriptors of the other set.
+   * @param l     the index of the minutia in <code>other</code>.
+   * @return the number of similar neighbours, between <code>0</code> and
+   *         {@link #neighbours()}.
+   */
+  public int similarity(final int k, final MinutiaDescriptors other, final int l) {
+    if (mapped != null || other.mapped != null) {
+      return similarityOfViews(k, other, l);
+    }
+    int similarity = 0;
+    for (int i = k * neighbours; i < k * neighbours + counts[k]; ++i) {
+      for (int j = l * other.neighbours; j < l * other.neighbours + other.counts[l]; ++j) {
+        if (Math.abs(distances[i] - other.distances[j]) <= Fingerprint.DISTANCE_THRESHOLD
+            && angleDifference(directions[i], other.directions[j]) <= Fingerprint.ORIENTATION_THRESHOLD
+            && angleDifference(orientations[i], other.orientations[j]) <= Fingerprint.ORIENTATION_THRESHOLD) {
+          ++similarity;
+          break;
+        }
+      }
+    }
+    return similarity;
+  }
+
+  /**
+   * Same as {@link #similarity(int, MinutiaDescriptors, int)} through the
+   * accessors, when one of the descriptors is a view of a buffer.
+   */
+  private int similarityOfViews(final int k, final MinutiaDescriptors other, final int l) {
+    int similarity = 0;
+    final int count = count(k);
+    final int otherCount = other.count(l);
+    for (int i = 0; i < count; ++i) {
+      final int distance = distance(k, i);
+      final int direction = direction(k, i);
+      final int orientation = orientation(k, i);
+      for (int j = 0; j < otherCount; ++j) {
+        if (Math.abs(distance - other.distance(l, j)) <= Fingerprint.DISTANCE_THRESHOLD
+            && angleDifference(direction, other.direction(l, j)) <= Fingerprint.ORIENTATION_THRESHOLD
+            && angleDifference(orientation, other.orientation(l, j)) <= Fingerprint.ORIENTATION_THRESHOLD) {
+          ++similarity;
+          break;
+        }
+      }
+    }
+    return similarity;
+  }
+
+  /**
+   * @param angle1 an angle in degrees, between <code>0</code> and
+   *               <code>359</code>.
+   * @param angle2 an angle in degrees, between <code>0</code> and
+   *               <code>359</code>.
+   * @return the smallest difference between the two angles, between
+   *         <code>0</code> and <code>180</code>.
+   */
+  private static int angleDifference(final int angle1, final int angle2) {
+    final int difference = Math.abs(angle1 - angle2);
+    return Math.min(difference, 360 - difference);
+  }
+
+  /**
+   * @return the maximum number of neighbours of a descriptor.
+   */
+  public int neighbours() {
+    return neighbours;
+  }
+
+  /**
+   * @return the number of minutiae described.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @param k the index of the minutia.
+   * @return the number of neighbours of the <code>k</code>-th minutia, less
+   *         than {@link #neighbours()} when the set is small.
+   */
+  public int count(final int k) {
+    return mapped == null ? counts[k] : mapped.getInt(4 * k);
+  }
+
+  /**
+   * @param k the index of the minutia.
+   * @param j the index of the neighbour, by increasing distance.
+   * @return the distance to the <code>j</code>-th neighbour.
+   */
+  public int distance(final int k, final int j) {
+    return mapped == null ? distances[k * neighbours + j] : mapped.getInt(4 * (size + k * neighbours + j));
+  }
+
+  /**
+   * @param k the index of the minutia.
+   * @param j the index of the neighbour, by increasing distance.
+   * @return the direction in degrees of the <code>j</code>-th neighbour,
+   *         relative to the angle of the minutia.
+   */
+  public int direction(final int k, final int j) {
+    return mapped == null ? directions[k * neighbours + j]
+        : mapped.getInt(4 * (size + (size + k) * neighbours + j));
+  }
+
+  /**
+   * @param k the index of the minutia.
+   * @param j the index of the neighbour, by increasing distance.
+   * @return the angle in degrees of the <code>j</code>-th neighbour, relative
+   *         to the angle of the minutia.
+   */
+  public int orientation(final int k, final int j) {
+    return mapped == null ? orientations[k * neighbours + j]
+        : mapped.getInt(4 * (size + (2 * size + k) * neighbours + j));
+  }
+}
@@ -0,0 +1,181 @@
+package cs107;
+
+import java.util.Arrays;
+
+/**
+ * Spatial index of a set of minutiae, used to find the minutiae close to a
+ * point without comparing it with every minutia.
+ * <p>
+ * The plane is divided in square cells of side <code>cellSize</code>, and the
+ * minutiae are grouped by cell. A minutia within <code>cellSize</code> of a
+ * point is then necessarily in the cell of the point or in one of the 8 cells
+ * around it. Cells are hashed into a table of buckets, so that any coordinate,
+ * including the negative ones produced by a transformation, can be indexed
+ * without knowing the extent of the set in advance. An instance can be indexed
+ * again with {@link #index(MinutiaeSet, int)}, reusing its arrays.
+ */
+public final class MinutiaeGrid {
+
+  private int cellSize = 1;
+  private int bucketMask;
+  private int[] bucketStart = new int[1];
+  private int[] buckets = new int[0];
+  private int[] rows = new int[0];
+  private int[] cols = new int[0];
+  private int[] angles = new int[0];
+  private int[] types = new int[0];
+  private int size;
+
+  /**
+   * Creates an empty index.
+   */
+  public MinutiaeGrid() {
+  }
+
+  /**
+   * Creates an index of a set of minutiae.
+   *
+   * @param minutiae the set of minutiae.
+   * @param cellSize the side of the cells, the largest distance that can be
+   *                 searched.
+   */
+  public MinutiaeGrid(final MinutiaeSet minutiae, final int cellSize) {
+    index(minutiae, cellSize);
+  }
+
+  /**
+   * Replaces the content of the index by a set of minutiae.
+   *
+   * @param minutiae the set of minutiae.
+   * @param cellSize the side of the cells, the largest distance that can be
+   *                 searched.
+   */
+  public void index(final MinutiaeSet minutiae, final int cellSize) {
+    this.cellSize = Math.max(cellSize, 1);
+    size = minutiae.size();
+
+    //about two buckets per minutia, as a power of two so that the hash is a mask
+    final int bucketCount = Integer.highestOneBit(Math.max(2 * size, 1) * 2 - 1);
+    bucketMask = bucketCount - 1;
+    if (bucketStart.length < bucketCount + 1) {
+      bucketStart = new int[bucketCount + 1];
+    } else {
+      Arrays.fill(bucketStart, 0, bucketCount + 1, 0);
+    }
+    if (rows.length < size) {
+      buckets = new int[size];
+      rows = new int[size];
+      cols = new int[size];
+      angles = new int[size];
+      types = new int[size];
+    }
+
+    //counting sort of the minutiae by bucket
+    for (int k = 0; k < size; ++k) {
+      buckets[k] = bucket(cell(minutiae.row(k)), cell(minutiae.col(k)));
+      ++bucketStart[buckets[k] + 1];
+    }
+    for (int b = 0; b < bucketCount; ++b) {
+      bucketStart[b + 1] += bucketStart[b];
+    }
+    for (int k = 0; k < size; ++k) {
+      final int position = bucketStart[buckets[k]]++;
+      rows[position] = minutiae.row(k);
+      cols[position] = minutiae.col(k);
+      angles[position] = minutiae.angle(k);
+      types[position] = minutiae.type(k);
+    }
+    //the start of each bucket was moved to the start of the next one
+    for (int b = bucketCount; b > 0; --b) {
+      bucketStart[b] = bucketStart[b - 1];
+    }
+    bucketStart[0] = 0;
+  }
+
+  /**
+   * @return the number of minutiae in the index.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return the side of the cells.
+   */
+  public int cellSize() {
+    return cellSize;
+  }
+
+  /**
+   * Checks whether a minutia of the index overlaps the given minutia of unknown
+   * type, with the criteria of
+   * {@link Fingerprint#matchingMinutiaeCount(MinutiaeSet, MinutiaeSet, int, int)}.
+   *
+   * @param row            the row of the minutia.
+   * @param col            the column of the minutia.
+   * @param angle          the angle of the minutia.
+   * @param maxDistance    the maximum distance between two minutiae to consider
+   *                       them as overlapping, at most {@link #cellSize()}.
+   * @param maxOrientation the maximum difference of orientation between two
+   *                       minutiae to consider them as overlapping.
+   * @return <code>true</code> if at least one minutia of the index overlaps.
+   */
+  public boolean containsMatch(final int row, final int col, final int angle, final int maxDistance,
+      final int maxOrientation) {
+    return containsMatch(row, col, angle, Fingerprint.MINUTIA_UNKNOWN, maxDistance, maxOrientation);
+  }
+
+  /**
+   * Checks whether a minutia of the index overlaps the given minutia, with the
+   * criteria of {@link Fingerprint#matchingMinutiaeCount(MinutiaeSet, MinutiaeSet, int, int)}.
+   *
+   * @param row            the row of the minutia.
+   * @param col            the column of the minutia.
+   * @param angle          the angle of the minutia.
+   * @param type           the type of the minutia.
+   * @param maxDistance    the maximum distance between two minutiae to consider
+   *                       them as overlapping, at most {@link #cellSize()}.
+   * @param maxOrientation the maximum difference of orientation between two
+   *                       minutiae to consider them as overlapping.
+   * @return <code>true</code> if at least one minutia of the index overlaps.
+   */
+  public boolean containsMatch(final int row, final int col, final int angle, final int type,
+      final int maxDistance, final int maxOrientation) {
+    assert (maxDistance <= cellSize);
+    final int maxSquaredDistance = maxDistance * maxDistance;
+    final int cellRow = cell(row);
+    final int cellCol = cell(col);
+    for (int dr = -1; dr <= 1; ++dr) {
+      for (int dc = -1; dc <= 1; ++dc) {
+        final int b = bucket(cellRow + dr, cellCol + dc);
+        for (int k = bucketStart[b]; k < bucketStart[b + 1]; ++k) {
+          //buckets may hold other cells, so every candidate is checked exactly
+          final int rowDistance = row - rows[k];
+          final int colDistance = col - cols[k];
+          if (rowDistance * rowDistance + colDistance * colDistance <= maxSquaredDistance
+              && Math.abs(angle - angles[k]) <= maxOrientation && MinutiaeSet.compatible(type, types[k])) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @param coordinate a row or a column.
+   * @return the index of the cell containing the coordinate.
+   */
+  private int cell(final int coordinate) {
+    return Math.floorDiv(coordinate, cellSize);
+  }
+
+  /**
+   * @param cellRow the row of the cell.
+   * @param cellCol the column of the cell.
+   * @return the bucket holding the cell.
+   */
+  private int bucket(final int cellRow, final int cellCol) {
+    return (cellRow * 0x9E3779B1 + cellCol * 0x85EBCA6B) >>> 7 & bucketMask;
+  }
+}
@@ -0,0 +1,210 @@
+package cs107;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A list of minutiae stored as parallel arrays of rows, columns, angles and
+ * types.
+ * <p>
+ * This is the same information as the <code>List&lt;int[]&gt;</code> returned
+ * by {@link Fingerprint#extract(boolean[][])}, where minutia <code>k</code> is
+ * <code>{row(k), col(k), angle(k)}</code>, but without one array per minutia.
+ * Minutiae extracted without their type have the type
+ * {@link Fingerprint#MINUTIA_UNKNOWN}, which is compatible with every type, so
+ * that they are matched exactly as before types were extracted.
+ * <p>
+ * A set can also be a read-only view of the minutiae stored in a buffer, such
+ * as the mapping of a {@link GalleryFile}, which is then read in place.
+ */
+public final class MinutiaeSet {
+
+  private int[] rows;
+  private int[] cols;
+  private int[] angles;
+  private int[] types;
+  private int size;
+  private final ByteBuffer mapped;
+
+  /**
+   * Creates an empty set.
+   *
+   * @param capacity the number of minutiae that can be added before the arrays
+   *                 grow.
+   */
+  public MinutiaeSet(final int capacity) {
+    rows = new int[capacity];
+    cols = new int[capacity];
+    angles = new int[capacity];
+    types = new int[capacity];
+    mapped = null;
+  }
+
+  /**
+   * Creates a read-only view of minutiae stored in a buffer.
+   */
+  private MinutiaeSet(final ByteBuffer mapped, final int size) {
+    this.mapped = mapped;
+    this.size = size;
+  }
+
+  /**
+   * Wraps minutiae stored in a buffer without copying them: the rows, then the
+   * columns, the angles and the types of the minutiae, as <code>int</code>s
+   * from the start of the buffer.
+   *
+   * @param buffer the buffer, starting at the first row.
+   * @param size   the number of minutiae.
+   * @return the read-only view of the minutiae.
+   */
+  static MinutiaeSet wrap(final ByteBuffer buffer, final int size) {
+    assert (buffer.capacity() >= 16L * size);
+    return new MinutiaeSet(buffer, size);
+  }
+
+  /**
+   * Converts a list of minutiae to a set.
+   *
+   * @param minutiae the list of minutiae, in the format of
+   *                 {@link Fingerprint#extract(boolean[][], boolean)}, with or
+   *                 without types.
+   * @return the set containing the same minutiae, in the same order.
+   */
+  public static MinutiaeSet fromList(final List<int[]> minutiae) {
+    final MinutiaeSet result = new MinutiaeSet(minutiae.size());
+    for (final int[] minutia : minutiae) {
+      result.add(minutia[0], minutia[1], minutia[2], minutia.length > 3 ? minutia[3] : Fingerprint.MINUTIA_UNKNOWN);
+    }
+    return result;
+  }
+
+  /**
+   * Converts this set to a list of minutiae, without their types.
+   *
+   * @return the list of minutiae, in the format of
+   *         {@link Fingerprint#extract(boolean[][])}.
+   */
+  public List<int[]> toList() {
+    return toList(false);
+  }
+
+  /**
+   * Converts this set to a list of minutiae.
+   *
+   * @param withType <code>true</code> to add the type of each minutia as a
+   *                 fourth element.
+   * @return the list of minutiae, in the format of
+   *         {@link Fingerprint#extract(boolean[][], boolean)}.
+   */
+  public List<int[]> toList(final boolean withType) {
+    final List<int[]> result = new ArrayList<>(size);
+    for (int k = 0; k < size; ++k) {
+      result.add(withType ? new int[] {row(k), col(k), angle(k), type(k)} : new int[] {row(k), col(k), angle(k)});
+    }
+    return result;
+  }
+
+  /**
+   * Checks whether two minutiae can correspond to each other given their types.
+   *
+   * @param type1 the type of the first minutia.
+   * @param type2 the type of the second minutia.
+   * @return <code>true</code> if the types are equal or one of them is
+   *         {@link Fingerprint#MINUTIA_UNKNOWN}.
+   */
+  public static boolean compatible(final int type1, final int type2) {
+    return type1 == type2 || type1 == Fingerprint.MINUTIA_UNKNOWN || type2 == Fingerprint.MINUTIA_UNKNOWN;
+  }
+
+  /**
+   * Adds a minutia of unknown type at the end of the set.
+   *
+   * @param row   the row of the minutia.
+   * @param col   the column of the minutia.
+   * @param angle the angle of the minutia in degrees.
+   */
+  public void add(final int row, final int col, final int angle) {
+    add(row, col, angle, Fingerprint.MINUTIA_UNKNOWN);
+  }
+
+  /**
+   * Adds a minutia at the end of the set.
+   *
+   * @param row   the row of the minutia.
+   * @param col   the column of the minutia.
+   * @param angle the angle of the minutia in degrees.
+   * @param type  the type of the minutia, such as
+   *              {@link Fingerprint#MINUTIA_ENDING}.
+   * @throws UnsupportedOperationException if the set is a view of a buffer.
+   */
+  public void add(final int row, final int col, final int angle, final int type) {
+    if (mapped != null) {
+      throw new UnsupportedOperationException("Read-only minutiae");
+    }
+    if (size == rows.length) {
+      final int capacity = Math.max(8, 2 * size);
+      rows = Arrays.copyOf(rows, capacity);
+      cols = Arrays.copyOf(cols, capacity);
+      angles = Arrays.copyOf(angles, capacity);
+      types = Arrays.copyOf(types, capacity);
+    }
+    rows[size] = row;
+    cols[size] = col;
+    angles[size] = angle;
+    types[size] = type;
+    ++size;
+  }
+
+  /**
+   * Removes every minutia, keeping the arrays.
+   *
+   * @throws UnsupportedOperationException if the set is a view of a buffer.
+   */
+  public void clear() {
+    if (mapped != null) {
+      throw new UnsupportedOperationException("Read-only minutiae");
+    }
+    size = 0;
+  }
+
+  /**
+   * @return the number of minutiae.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @param k the index of the minutia.
+   * @return the row of the <code>k</code>-th minutia.
+   */
+  public int row(final int k) {
+    return mapped == null ? rows[k] : mapped.getInt(4 * k);
+  }
+
+  /**
+   * @param k the index of the minutia.
+   * @return the column of the <code>k</code>-th minutia.
+   */
+  public int col(final int k) {
+    return mapped == null ? cols[k] : mapped.getInt(4 * (size + k));
+  }
+
+  /**
+   * @param k the index of the minutia.
+   * @return the angle in degrees of the <code>k</code>-th minutia.
+   */
+  public int angle(final int k) {
+    return mapped == null ? angles[k] : mapped.getInt(4 * (2 * size + k));
+  }
+
+  /**
+   * @param k the index of the minutia.
+   * @return the type of the <code>k</code>-th minutia.
+   */
+  public int type(final int k) {
+    return mapped == null ? types[k] : mapped.getInt(4 * (3 * size + k));
+  }
+}
@@ -0,0 +1,187 @@
+package cs107;
+
+/**
+ * Bit-packed binary image surrounded by a one pixel white border.
+ * <p>
+ * The pixel at <code>(row, col)</code> is stored at <code>(row + 1, col +
+ * 1)</code> of a packed image of <code>height + 2</code> rows and
+ * <code>width + 2</code> columns, laid out as in {@link BinaryImage}, followed
+ * by one spare word. Every pixel of the image therefore has its 8 neighbours
+ * in storage, and {@link #neighbourMask(int, int)} reads them without any
+ * bounds check.
+ */
+public final class PaddedBinaryImage {
+
+  /**
+   * Converts the 9 bits <code>up | middle &lt;&lt; 3 | down &lt;&lt; 6</code>,
+   * where each row holds the pixels <code>col - 1</code>, <code>col</code> and
+   * <code>col + 1</code> as bits 0, 1 and 2, to the neighbour numbering of
+   * {@link Fingerprint#getNeighbours(boolean[][], int, int)}.
+   */
+  private static final int[] NEIGHBOUR_ORDER = new int[512];
+
+  static {
+    for (int index = 0; index < 512; ++index) {
+      final int up = index & 7;
+      final int middle = (index >> 3) & 7;
+      final int down = (index >> 6) & 7;
+      NEIGHBOUR_ORDER[index] = ((up >> 1) & 1)
+          | ((up >> 2) & 1) << 1
+          | ((middle >> 2) & 1) << 2
+          | ((down >> 2) & 1) << 3
+          | ((down >> 1) & 1) << 4
+          | (down & 1) << 5
+          | (middle & 1) << 6
+          | (up & 1) << 7;
+    }
+  }
+
+  private final int height;
+  private final int width;
+  private final int wordsPerRow;
+  private final long[] words;
+
+  /**
+   * Creates a new white image.
+   *
+   * @param height the number of rows of the image, border excluded.
+   * @param width  the number of columns of the image, border excluded.
+   */
+  public PaddedBinaryImage(final int height, final int width) {
+    assert (height >= 0 && width >= 0);
+    this.height = height;
+    this.width = width;
+    this.wordsPerRow = (width + 2 + BinaryImage.WORD_SIZE - 1) / BinaryImage.WORD_SIZE;
+    this.words = new long[(height + 2) * wordsPerRow + 1];
+  }
+
+  /**
+   * Copies a packed image into a padded image.
+   *
+   * @param image the packed image.
+   * @return the padded image.
+   */
+  public static PaddedBinaryImage from(final BinaryImage image) {
+    final PaddedBinaryImage result = new PaddedBinaryImage(image.height(), image.width());
+    final long[] source = image.words();
+    final int sourceWordsPerRow = image.wordsPerRow();
+    for (int row = 0; row < image.height(); ++row) {
+      final int from = row * sourceWordsPerRow;
+      final int to = (row + 1) * result.wordsPerRow;
+
+      //each row is shifted by one column, the top bit moving to the next word
+      for (int w = 0; w < sourceWordsPerRow; ++w) {
+        result.words[to + w] |= source[from + w] << 1;
+        if (w + 1 < result.wordsPerRow) {
+          result.words[to + w + 1] |= source[from + w] >>> (BinaryImage.WORD_SIZE - 1);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Copies this image without its border.
+   *
+   * @return the packed image.
+   */
+  public BinaryImage toBinaryImage() {
+    final BinaryImage result = new BinaryImage(height, width);
+    final long[] target = result.words();
+    final int targetWordsPerRow = result.wordsPerRow();
+    for (int row = 0; row < height; ++row) {
+      final int from = (row + 1) * wordsPerRow;
+      final int to = row * targetWordsPerRow;
+
+      //the next word is at worst the left border of the next row, which is white
+      for (int w = 0; w < targetWordsPerRow; ++w) {
+        target[to + w] = (words[from + w] >>> 1) | (words[from + w + 1] << (BinaryImage.WORD_SIZE - 1));
+      }
+      //the right border is white, so the bits past the width are already 0
+    }
+    return result;
+  }
+
+  /**
+   * @return the number of rows of the image, border excluded.
+   */
+  public int height() {
+    return height;
+  }
+
+  /**
+   * @return the number of columns of the image, border excluded.
+   */
+  public int width() {
+    return width;
+  }
+
+  /**
+   * Returns the value of a pixel.
+   *
+   * @param row the row of the pixel, between <code>-1</code> and
+   *            {@link #height()}(included).
+   * @param col the column of the pixel, between <code>-1</code> and
+   *            {@link #width()}(included).
+   * @return <code>true</code> if the pixel is black, pixels of the border are
+   *         always white.
+   */
+  public boolean get(final int row, final int col) {
+    final int storedCol = col + 1;
+    return (words[(row + 1) * wordsPerRow + (storedCol >>> 6)] & (1L << storedCol)) != 0;
+  }
+
+  /**
+   * Sets the value of a pixel.
+   *
+   * @param row   the row of the pixel, between <code>0</code>(included) and
+   *              {@link #height()}(excluded).
+   * @param col   the column of the pixel, between <code>0</code>(included) and
+   *              {@link #width()}(excluded).
+   * @param value <code>true</code> for black, <code>false</code> for white.
+   */
+  public void set(final int row, final int col, final boolean value) {
+    assert (0 <= row && row < height && 0 <= col && col < width);
+    final int storedCol = col + 1;
+    final int index = (row + 1) * wordsPerRow + (storedCol >>> 6);
+    if (value) {
+      words[index] |= 1L << storedCol;
+    } else {
+      words[index] &= ~(1L << storedCol);
+    }
+  }
+
+  /**
+   * Returns the 8 neighbours of the pixel at <code>(row, col)</code> without
+   * allocating nor checking bounds: bit <code>k</code> of the result is the
+   * value of neighbour <code>k</code> as numbered in
+   * {@link Fingerprint#getNeighbours(boolean[][], int, int)}.
+   *
+   * @param row the row of the pixel, between <code>0</code>(included) and
+   *            {@link #height()}(excluded).
+   * @param col the column of the pixel, between <code>0</code>(included) and
+   *            {@link #width()}(excluded).
+   * @return the neighbours as a mask, between <code>0</code> and
+   *         <code>255</code>.
+   */
+  public int neighbourMask(final int row, final int col) {
+    //the stored columns col, col + 1 and col + 2 are the columns col - 1 to col + 1
+    final int index = row * wordsPerRow + (col >>> 6);
+    final int bit = col & (BinaryImage.WORD_SIZE - 1);
+    return NEIGHBOUR_ORDER[window(index, bit)
+        | window(index + wordsPerRow, bit) << 3
+        | window(index + 2 * wordsPerRow, bit) << 6];
+  }
+
+  /**
+   * Reads 3 consecutive stored pixels, possibly spanning two words.
+   *
+   * @param index the index of the word holding the first pixel.
+   * @param bit   the position of the first pixel in its word.
+   * @return the 3 pixels as bits 0 to 2.
+   */
+  private int window(final int index, final int bit) {
+    //shifting by 1 then by 63 - bit drops the next word entirely when bit is 0
+    return (int) (((words[index] >>> bit) | ((words[index + 1] << 1) << (BinaryImage.WORD_SIZE - 1 - bit))) & 7);
+  }
+}
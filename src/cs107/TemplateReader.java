@@ -0,0 +1,195 @@
+package cs107;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Reads the templates written by {@link TemplateWriter}, one record at a time.
+ * <p>
+ * Each record is loaded in a reused buffer with a single read and decoded from
+ * it, so reading costs a few operations per minutia. Templates stored without
+ * descriptors get them computed again.
+ */
+public final class TemplateReader implements Closeable {
+
+  private final InputStream input;
+  private final int version;
+  private byte[] record = new byte[256];
+
+  /**
+   * Creates a reader, checking the header of the stream.
+   *
+   * @param input the stream of templates, buffered by the reader.
+   * @throws IOException if the stream does not start with a supported header.
+   */
+  public TemplateReader(final InputStream input) throws IOException {
+    this.input = new BufferedInputStream(input);
+    for (final byte expected : TemplateWriter.MAGIC) {
+      if (this.input.read() != expected) {
+        throw new IOException("Not a template stream");
+      }
+    }
+    version = this.input.read();
+    if (version != TemplateWriter.VERSION) {
+      throw new IOException("Unsupported template version: " + version);
+    }
+  }
+
+  /**
+   * @return the version of the format of the stream.
+   */
+  public int version() {
+    return version;
+  }
+
+  /**
+   * Reads the next template.
+   *
+   * @return the template, or <code>null</code> at the end of the stream.
+   * @throws IOException if the stream ends in the middle of a record, if a
+   *                     record is corrupted or if the stream cannot be read.
+   */
+  public FingerprintTemplate read() throws IOException {
+    final int first = input.read();
+    if (first < 0) {
+      return null;
+    }
+    final int length = readVarint(first);
+    if (length < 0) {
+      throw new IOException("Corrupted template");
+    }
+    int read = 0;
+    while (read < length) {
+      if (read == record.length) {
+        //grows with the bytes read, so that a corrupted length cannot allocate more than the stream holds
+        record = Arrays.copyOf(record, (int) Math.min(length, 2L * record.length));
+      }
+      final int count = input.read(record, read, Math.min(length, record.length) - read);
+      if (count < 0) {
+        throw new EOFException("Truncated template");
+      }
+      read += count;
+    }
+    return decode(ByteBuffer.wrap(record, 0, length));
+  }
+
+  /**
+   * Decodes the record of a template, from the position to the limit of a
+   * buffer.
+   *
+   * @param record the content of the record, without its length.
+   * @return the template.
+   * @throws IOException if the record is corrupted.
+   */
+  static FingerprintTemplate decode(final ByteBuffer record) throws IOException {
+    final int flags = getVarint(record);
+    final int size = getVarint(record);
+    //each minutia takes at least 3 bytes, which bounds the arrays allocated
+    if (size < 0 || size > record.remaining() / 3) {
+      throw new IOException("Corrupted template");
+    }
+    final MinutiaeSet minutiae = new MinutiaeSet(size);
+    int row = 0;
+    int col = 0;
+    for (int k = 0; k < size; ++k) {
+      row += unZigZag(getVarint(record));
+      col += unZigZag(getVarint(record));
+      final int angle = getVarint(record);
+      minutiae.add(row, col, angle & ((1 << TemplateWriter.ANGLE_BITS) - 1), angle >>> TemplateWriter.ANGLE_BITS);
+    }
+    if ((flags & TemplateWriter.WITH_DESCRIPTORS) == 0) {
+      if (record.hasRemaining()) {
+        throw new IOException("Corrupted template");
+      }
+      return FingerprintTemplate.of(minutiae);
+    }
+
+    final int neighbours = getVarint(record);
+    if (neighbours < 0 || neighbours > MinutiaDescriptors.MAX_NEIGHBOURS) {
+      throw new IOException("Corrupted template");
+    }
+    final int[] counts = new int[size];
+    final int[] distances = new int[size * neighbours];
+    final int[] directions = new int[size * neighbours];
+    final int[] orientations = new int[size * neighbours];
+    for (int k = 0; k < size; ++k) {
+      counts[k] = getVarint(record);
+      if (counts[k] < 0 || counts[k] > neighbours) {
+        throw new IOException("Corrupted template");
+      }
+      for (int j = k * neighbours; j < k * neighbours + counts[k]; ++j) {
+        distances[j] = getVarint(record);
+        final int angles = getVarint(record);
+        directions[j] = angles & ((1 << TemplateWriter.ANGLE_BITS) - 1);
+        orientations[j] = angles >>> TemplateWriter.ANGLE_BITS;
+      }
+    }
+    if (record.hasRemaining()) {
+      throw new IOException("Corrupted template");
+    }
+    return new FingerprintTemplate(minutiae,
+        new MinutiaDescriptors(neighbours, counts, distances, directions, orientations));
+  }
+
+  @Override
+  public void close() throws IOException {
+    input.close();
+  }
+
+  /**
+   * @param value an integer encoded by {@link TemplateWriter}.
+   * @return the signed integer.
+   */
+  private static int unZigZag(final int value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  /**
+   * Decodes an unsigned variable-length integer of a record.
+   *
+   * @param record the record, positioned on the integer.
+   * @return the integer.
+   * @throws IOException if the record ends in the middle of the integer.
+   */
+  private static int getVarint(final ByteBuffer record) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      if (!record.hasRemaining()) {
+        throw new IOException("Corrupted template");
+      }
+      final byte b = record.get();
+      value |= (b & 0x7F) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+    throw new IOException("Corrupted template");
+  }
+
+  /**
+   * Reads an unsigned variable-length integer from the stream.
+   *
+   * @param first the first byte, already read.
+   * @return the integer.
+   * @throws IOException if the stream ends in the middle of the integer.
+   */
+  private int readVarint(int first) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      if (first < 0) {
+        throw new EOFException("Truncated template");
+      }
+      value |= (first & 0x7F) << shift;
+      if ((first & 0x80) == 0) {
+        return value;
+      }
+      first = input.read();
+    }
+    throw new IOException("Corrupted template");
+  }
+}
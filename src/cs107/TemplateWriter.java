@@ -0,0 +1,217 @@
+package cs107;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Writes templates to a stream in a compact binary format, read back by
+ * {@link TemplateReader}.
+ * <p>
+ * The stream starts with the 3 bytes of {@link #MAGIC} and the byte
+ * {@link #VERSION}, followed by one record per template. A record is its
+ * length in bytes followed by its content, made of unsigned variable-length
+ * integers (7 bits per byte, the high bit announcing another byte):
+ * <ul>
+ * <li>the flags, {@link #WITH_DESCRIPTORS} if the descriptors follow the
+ * minutiae, and the number of minutiae;</li>
+ * <li>for each minutia, the differences of its row and of its column with the
+ * previous minutia, zig-zag encoded so that small negative differences stay
+ * small, and its angle with its type in bits 9 and 10;</li>
+ * <li>if present, the number of neighbours of a descriptor, then for each
+ * minutia its number of neighbours and, for each neighbour, its distance and
+ * its direction with its orientation in bits 9 to 17.</li>
+ * </ul>
+ * Minutiae extracted in row-major order take about 3 bytes each.
+ */
+public final class TemplateWriter implements Closeable, Flushable {
+
+  /**
+   * The first bytes of a stream of templates.
+   */
+  static final byte[] MAGIC = {'F', 'P', 'T'};
+
+  /**
+   * The version of the format written.
+   */
+  public static final int VERSION = 1;
+
+  /**
+   * The flag of a record containing the descriptors of its minutiae.
+   */
+  static final int WITH_DESCRIPTORS = 1;
+
+  /**
+   * The number of bits of an angle, the type or the second angle being stored
+   * above them.
+   */
+  static final int ANGLE_BITS = 9;
+
+  private final OutputStream output;
+  private final boolean withDescriptors;
+  private byte[] record = new byte[256];
+  private int size;
+
+  /**
+   * Creates a writer storing the descriptors of the templates.
+   *
+   * @param output the stream receiving the templates, buffered by the writer.
+   * @throws IOException if the header cannot be written.
+   */
+  public TemplateWriter(final OutputStream output) throws IOException {
+    this(output, true);
+  }
+
+  /**
+   * Creates a writer.
+   *
+   * @param output          the stream receiving the templates, buffered by
+   *                        the writer.
+   * @param withDescriptors <code>false</code> to only store the minutiae, the
+   *                        descriptors being computed again when reading.
+   * @throws IOException if the header cannot be written.
+   */
+  public TemplateWriter(final OutputStream output, final boolean withDescriptors) throws IOException {
+    this.output = new BufferedOutputStream(output);
+    this.withDescriptors = withDescriptors;
+    this.output.write(MAGIC);
+    this.output.write(VERSION);
+  }
+
+  /**
+   * Creates a writer that only encodes records.
+   *
+   * @param withDescriptors <code>false</code> to only store the minutiae.
+   */
+  private TemplateWriter(final boolean withDescriptors) {
+    this.output = null;
+    this.withDescriptors = withDescriptors;
+  }
+
+  /**
+   * Encodes the record of a template, without its length.
+   *
+   * @param template        the template.
+   * @param withDescriptors <code>false</code> to only store the minutiae.
+   * @return the content of the record, decoded by
+   *         {@link TemplateReader#decode(java.nio.ByteBuffer)}.
+   */
+  static byte[] encode(final FingerprintTemplate template, final boolean withDescriptors) {
+    final TemplateWriter encoder = new TemplateWriter(withDescriptors);
+    encoder.encode(template);
+    return Arrays.copyOf(encoder.record, encoder.size);
+  }
+
+  /**
+   * Appends a template to the stream.
+   *
+   * @param template the template, with angles between <code>0</code> and
+   *                 <code>511</code>.
+   * @throws IOException if the record cannot be written.
+   */
+  public void write(final FingerprintTemplate template) throws IOException {
+    encode(template);
+
+    //the length lets the reader load a whole record at once
+    writeVarint(size);
+    output.write(record, 0, size);
+  }
+
+  /**
+   * Encodes the record of a template in the buffer of this writer.
+   *
+   * @param template the template.
+   */
+  private void encode(final FingerprintTemplate template) {
+    final MinutiaeSet minutiae = template.minutiae();
+    size = 0;
+    putVarint(withDescriptors ? WITH_DESCRIPTORS : 0);
+    putVarint(minutiae.size());
+    int row = 0;
+    int col = 0;
+    for (int k = 0; k < minutiae.size(); ++k) {
+      putVarint(zigZag(minutiae.row(k) - row));
+      putVarint(zigZag(minutiae.col(k) - col));
+      putVarint(packAngle(minutiae.angle(k), minutiae.type(k)));
+      row = minutiae.row(k);
+      col = minutiae.col(k);
+    }
+
+    if (withDescriptors) {
+      final MinutiaDescriptors descriptors = template.descriptors();
+      putVarint(descriptors.neighbours());
+      for (int k = 0; k < descriptors.size(); ++k) {
+        putVarint(descriptors.count(k));
+        for (int j = 0; j < descriptors.count(k); ++j) {
+          putVarint(descriptors.distance(k, j));
+          putVarint(packAngle(descriptors.direction(k, j), descriptors.orientation(k, j)));
+        }
+      }
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    output.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    output.close();
+  }
+
+  /**
+   * @param angle an angle in degrees, between <code>0</code> and
+   *              <code>511</code>.
+   * @param high  the value stored above the angle.
+   * @return the angle and the value packed in one integer.
+   */
+  private static int packAngle(final int angle, final int high) {
+    if (angle < 0 || angle >= 1 << ANGLE_BITS || high < 0) {
+      throw new IllegalArgumentException("Angle out of range: " + angle);
+    }
+    return angle | high << ANGLE_BITS;
+  }
+
+  /**
+   * @param value a signed integer.
+   * @return the integer mapped to an unsigned one, small in absolute value
+   *         integers staying small.
+   */
+  private static int zigZag(final int value) {
+    return (value << 1) ^ (value >> 31);
+  }
+
+  /**
+   * Appends an unsigned variable-length integer to the current record.
+   *
+   * @param value the integer, treated as unsigned.
+   */
+  private void putVarint(int value) {
+    if (record.length < size + 5) {
+      record = Arrays.copyOf(record, 2 * record.length);
+    }
+    while ((value & ~0x7F) != 0) {
+      record[size++] = (byte) (value & 0x7F | 0x80);
+      value >>>= 7;
+    }
+    record[size++] = (byte) value;
+  }
+
+  /**
+   * Writes an unsigned variable-length integer to the stream.
+   *
+   * @param value the integer, treated as unsigned.
+   * @throws IOException if it cannot be written.
+   */
+  private void writeVarint(int value) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      output.write(value & 0x7F | 0x80);
+      value >>>= 7;
+    }
+    output.write(value);
+  }
+}